@@ -0,0 +1,56 @@
+package tech.guiyom.anscapes;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Input images for benchmarks, as ARGB pixel arrays.
+ */
+public final class BenchmarkImages {
+
+    private BenchmarkImages() {}
+
+    /**
+     * @param name one of "shield" (the test image, 360x360), "gradient" (1920x1080) or "noise" (1920x1080)
+     * @return the image
+     */
+    public static BufferedImage load(String name) {
+        switch (name) {
+            case "shield":
+                try (InputStream in = BenchmarkImages.class.getResourceAsStream("/shield.png")) {
+                    return ImageIO.read(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            case "gradient": {
+                BufferedImage img = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_ARGB);
+                for (int y = 0; y < img.getHeight(); ++y)
+                    for (int x = 0; x < img.getWidth(); ++x)
+                        img.setRGB(x, y, 0xff000000 | (x * 255 / img.getWidth()) << 16 | (y * 255 / img.getHeight()) << 8 | 0x80);
+                return img;
+            }
+            case "noise": {
+                BufferedImage img = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_ARGB);
+                Random random = new Random(42);
+                for (int y = 0; y < img.getHeight(); ++y)
+                    for (int x = 0; x < img.getWidth(); ++x)
+                        img.setRGB(x, y, 0xff000000 | random.nextInt());
+                return img;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown image : " + name);
+        }
+    }
+
+    /**
+     * @param img the image
+     * @return the image pixels
+     */
+    public static int[] pixels(BufferedImage img) {
+        return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+    }
+}
@@ -0,0 +1,62 @@
+package tech.guiyom.anscapes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escape sequence encoding of an image worth of colors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+    private int[] pixels;
+    private CharBuffer chars;
+    private ByteBuffer bytes;
+
+    @Setup
+    public void setup() {
+        pixels = BenchmarkImages.pixels(BenchmarkImages.load("shield"));
+        chars = CharBuffer.allocate(pixels.length * 19);
+        bytes = ByteBuffer.allocate(pixels.length * 19);
+    }
+
+    @Benchmark
+    public void rgbColorString(Blackhole bh) {
+        for (int p : pixels)
+            bh.consume(Anscapes.rgb(p).fg());
+    }
+
+    @Benchmark
+    public CharBuffer sgrEncoderChars() {
+        chars.clear();
+        for (int p : pixels)
+            SgrEncoder.fgRgb(chars, p);
+        return chars;
+    }
+
+    @Benchmark
+    public ByteBuffer sgrEncoderBytes() {
+        bytes.clear();
+        for (int p : pixels)
+            SgrEncoder.fgRgb(bytes, p);
+        return bytes;
+    }
+}
@@ -0,0 +1,57 @@
+package tech.guiyom.anscapes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.guiyom.anscapes.renderer.ImageRenderer;
+
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * Escaping of a rendered frame, as done when logging output.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscapeBenchmark {
+
+    private String frame;
+    private CharBuffer chars;
+
+    @Setup
+    public void setup() {
+        frame = ImageRenderer.createRenderer(ColorMode.RGB, 360, 360).renderString(BenchmarkImages.load("shield"));
+        chars = CharBuffer.allocate(frame.length() * 2);
+    }
+
+    @Benchmark
+    public String regex() {
+        return frame.replaceAll("\\n", Matcher.quoteReplacement("\\n"))
+                .replaceAll("\\r", Matcher.quoteReplacement("\\r"))
+                .replaceAll("\\033", Matcher.quoteReplacement("\\033"));
+    }
+
+    @Benchmark
+    public String escapeString() {
+        return Anscapes.escape(frame);
+    }
+
+    @Benchmark
+    public CharBuffer escapeChars() {
+        chars.clear();
+        Anscapes.escape(frame, chars);
+        return chars;
+    }
+}
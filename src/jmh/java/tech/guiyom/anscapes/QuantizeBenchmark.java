@@ -0,0 +1,84 @@
+package tech.guiyom.anscapes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Color matching over every pixel of an image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuantizeBenchmark {
+
+    @Param({ "shield", "noise" })
+    public String image;
+
+    @Param({ "0", "8" })
+    public int threshold;
+
+    @Param({ "EUCLIDEAN", "REDMEAN", "CIELAB" })
+    public ColorMetric metric;
+
+    private int[] pixels;
+    private ColorQuantizer quantizer;
+    private ColorQuantizer palette256;
+
+    @Setup
+    public void setup() {
+        BufferedImage img = BenchmarkImages.load(image);
+        pixels = BenchmarkImages.pixels(img);
+        quantizer = ColorQuantizer.ansi(threshold, metric);
+        palette256 = Palette256.quantizer(metric);
+    }
+
+    @Benchmark
+    public void findNearestColor(Blackhole bh) {
+        for (int p : pixels)
+            bh.consume(Anscapes.findNearestColor(new Color(p, true), threshold));
+    }
+
+    @Benchmark
+    public void colorQuantizer(Blackhole bh) {
+        for (int p : pixels)
+            bh.consume(quantizer.nearest(p));
+    }
+
+    @Benchmark
+    public void palette256(Blackhole bh) {
+        for (int p : pixels)
+            bh.consume(Palette256.nearest(p));
+    }
+
+    @Benchmark
+    public void palette256Table(Blackhole bh) {
+        for (int p : pixels)
+            bh.consume(palette256.nearest(p));
+    }
+
+    /**
+     * Bias comparisons between neighbouring pixels, as done for every cell in rgb mode.
+     */
+    @Benchmark
+    public void distance(Blackhole bh) {
+        for (int i = 1; i < pixels.length; ++i)
+            bh.consume(metric.distanceSq(pixels[i - 1], pixels[i]));
+    }
+}
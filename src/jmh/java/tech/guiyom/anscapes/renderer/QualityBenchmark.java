@@ -0,0 +1,100 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tech.guiyom.anscapes.BenchmarkImages;
+import tech.guiyom.anscapes.ColorMode;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost and output size of the settings trading speed for image quality : area averaging and dithering.
+ * Each setting is compared with the plain renderer of the same color mode, at a single target size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QualityBenchmark {
+
+    /**
+     * Color mode, then a scaling or a dithering. RGB has no dithering.
+     */
+    @Param({ "RGB", "RGB/AREA_AVERAGE",
+            "PALETTE_256", "PALETTE_256/AREA_AVERAGE", "PALETTE_256/ORDERED", "PALETTE_256/FLOYD_STEINBERG",
+            "ANSI", "ANSI/AREA_AVERAGE", "ANSI/ORDERED", "ANSI/FLOYD_STEINBERG" })
+    public String setting;
+
+    @Param({ "shield", "gradient" })
+    public String image;
+
+    private ImageRenderer renderer;
+    private int[] pixels;
+    private int width;
+    private int height;
+
+    /**
+     * Output size of a frame, reported next to the timings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Output {
+        public long bytesPerFrame;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerFrame = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        BufferedImage img = BenchmarkImages.load(image);
+        pixels = BenchmarkImages.pixels(img);
+        width = img.getWidth();
+        height = img.getHeight();
+
+        String[] parts = setting.split("/");
+        String option = parts.length > 1 ? parts[1] : "";
+        Dithering dithering = option.equals("ORDERED") || option.equals("FLOYD_STEINBERG") ? Dithering.valueOf(option) : Dithering.NONE;
+        switch (ColorMode.valueOf(parts[0])) {
+            case ANSI:
+                AnsiImageRenderer ansi = new AnsiImageRenderer(160, 96);
+                ansi.setDithering(dithering);
+                renderer = ansi;
+                break;
+            case RGB:
+                renderer = new RgbImageRenderer(160, 96);
+                break;
+            default:
+                Palette256ImageRenderer palette = new Palette256ImageRenderer(160, 96);
+                palette.setDithering(dithering);
+                renderer = palette;
+        }
+        if (option.equals("AREA_AVERAGE"))
+            ((AbstractImageRenderer) renderer).setScaling(Scaling.AREA_AVERAGE);
+    }
+
+    @Benchmark
+    public void renderBytes(Blackhole bh, Output output) {
+        renderer.renderBytes(pixels, width, height, buf -> {
+            output.bytesPerFrame = buf.remaining();
+            bh.consume(buf);
+        });
+    }
+}
@@ -0,0 +1,107 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tech.guiyom.anscapes.BenchmarkImages;
+import tech.guiyom.anscapes.ColorMode;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole frame rendering, from pixels to escape sequences, with the default scaling and no dithering.
+ * Run with {@code -prof gc} (the default of the jmh task) to check allocations per frame.
+ *
+ * @see QualityBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    /**
+     * Color mode, then the bias for RGB or the threshold for ANSI. The 256 colors renderer has neither.
+     */
+    @Param({ "ANSI", "ANSI/8", "ANSI/32", "PALETTE_256", "RGB", "RGB/8", "RGB/32" })
+    public String mode;
+
+    @Param({ "80x48", "360x360" })
+    public String size;
+
+    @Param({ "shield", "gradient" })
+    public String image;
+
+    private ImageRenderer renderer;
+    private int[] pixels;
+    private int width;
+    private int height;
+
+    /**
+     * Output size of a frame, reported next to the timings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Output {
+        public long bytesPerFrame;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerFrame = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        BufferedImage img = BenchmarkImages.load(image);
+        pixels = BenchmarkImages.pixels(img);
+        width = img.getWidth();
+        height = img.getHeight();
+
+        String[] dims = size.split("x");
+        int targetWidth = Integer.parseInt(dims[0]);
+        int targetHeight = Integer.parseInt(dims[1]);
+        String[] setting = mode.split("/");
+        int bias = setting.length > 1 ? Integer.parseInt(setting[1]) : 0;
+        switch (ColorMode.valueOf(setting[0])) {
+            case ANSI:
+                renderer = new AnsiImageRenderer(targetWidth, targetHeight, bias);
+                break;
+            case RGB:
+                renderer = new RgbImageRenderer(targetWidth, targetHeight, bias);
+                break;
+            default:
+                renderer = new Palette256ImageRenderer(targetWidth, targetHeight);
+        }
+    }
+
+    @Benchmark
+    public void renderChars(Blackhole bh) {
+        renderer.render(pixels, width, height, (buf, len) -> {
+            bh.consume(buf);
+            bh.consume(len);
+        });
+    }
+
+    @Benchmark
+    public void renderBytes(Blackhole bh, Output output) {
+        renderer.renderBytes(pixels, width, height, buf -> {
+            output.bytesPerFrame = buf.remaining();
+            bh.consume(buf);
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.guiyom.anscapes.BenchmarkImages;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResizeBenchmark {
+
+    @Param({ "shield", "gradient" })
+    public String image;
+
+    @Param({ "80x48", "200x100", "400x200" })
+    public String size;
+
+    private int[] pixels;
+    private int width;
+    private int height;
+    private int[] out;
+    private int targetWidth;
+    private int targetHeight;
+
+    @Setup
+    public void setup() {
+        BufferedImage img = BenchmarkImages.load(image);
+        pixels = BenchmarkImages.pixels(img);
+        width = img.getWidth();
+        height = img.getHeight();
+        String[] dims = size.split("x");
+        targetWidth = Integer.parseInt(dims[0]);
+        targetHeight = Integer.parseInt(dims[1]);
+        out = new int[targetWidth * targetHeight];
+    }
+
+    @Benchmark
+    public int[] nearestNeighbour() {
+        AbstractImageRenderer.resize(pixels, width, height, out, targetWidth, targetHeight);
+        return out;
+    }
+
+    @Benchmark
+    public int[] areaAverage() {
+        AbstractImageRenderer.resizeAverage(pixels, width, height, out, targetWidth, targetHeight);
+        return out;
+    }
+}
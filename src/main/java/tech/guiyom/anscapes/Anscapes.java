@@ -2,7 +2,9 @@ package tech.guiyom.anscapes;
 
 import java.awt.Color;
 import java.io.IOException;
-import java.util.regex.Matcher;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
 
 /**
  * Contains about everything you need to manipulate the terminal using ansi escape codes.
@@ -61,11 +63,213 @@ public final class Anscapes {
      *
      * @param s the string to be escaped
      * @return the escaped code
+     * @see #unescape(String)
      */
     public static String escape(String s) {
-        return s.replaceAll("\\n", Matcher.quoteReplacement("\\n"))
-                       .replaceAll("\\r", Matcher.quoteReplacement("\\r"))
-                       .replaceAll("\\033", Matcher.quoteReplacement("\\033"));
+        int i = nextEscaped(s, 0);
+        if (i == s.length())
+            return s;
+        StringBuilder sb = new StringBuilder(s.length() + (s.length() >> 3) + 16);
+        try {
+            escape(s, i, sb);
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Escape to allow copy paste, in a single pass and without copying the string.
+     * Line feeds, carriage returns and escape characters become {@code \n}, {@code \r} and {@code \033},
+     * backslashes are doubled so that {@link #unescape(CharSequence, Appendable)} gives the string back.
+     *
+     * @param s   the string to be escaped
+     * @param out where to write the escaped code, writers and buffers are written to directly
+     * @throws IOException if the output throws
+     */
+    public static void escape(CharSequence s, Appendable out) throws IOException {
+        escape(s, nextEscaped(s, 0), out);
+    }
+
+    /**
+     * @param first the index of the first character to escape
+     */
+    private static void escape(CharSequence s, int first, Appendable out) throws IOException {
+        int start = 0;
+        int length = s.length();
+        for (int i = first; i < length; i = nextEscaped(s, start)) {
+            appendRun(s, start, i, out);
+            out.append(escaped(s.charAt(i)));
+            start = i + 1;
+        }
+        appendRun(s, start, length, out);
+    }
+
+    /**
+     * Same as {@link #escape(CharSequence, Appendable)}.
+     *
+     * @param s   the string to be escaped
+     * @param out where to write the escaped code
+     */
+    public static void escape(CharSequence s, StringBuilder out) {
+        try {
+            escape(s, (Appendable) out);
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Same as {@link #escape(CharSequence, Appendable)}.
+     *
+     * @param s   the string to be escaped
+     * @param out where to write the escaped code
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void escape(CharSequence s, CharBuffer out) {
+        try {
+            escape(s, (Appendable) out);
+        } catch (IOException e) {
+            // CharBuffer doesn't throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reverse of {@link #escape(String)}. {@code \e} is understood as an escape character too,
+     * unknown escapes are kept as they are.
+     *
+     * @param s the escaped code
+     * @return the original string
+     */
+    public static String unescape(String s) {
+        if (s.indexOf('\\') < 0)
+            return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        unescape(s, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Reverse of {@link #escape(CharSequence, Appendable)}, in a single pass.
+     *
+     * @param s   the escaped code
+     * @param out where to write the original string
+     * @throws IOException if the output throws
+     */
+    public static void unescape(CharSequence s, Appendable out) throws IOException {
+        int start = 0;
+        int length = s.length();
+        for (int i = nextBackslash(s, 0); i < length; i = nextBackslash(s, start)) {
+            appendRun(s, start, i, out);
+            char c = i + 1 < length ? s.charAt(i + 1) : 0;
+            if (c == 'n') {
+                out.append('\n');
+                start = i + 2;
+            } else if (c == 'r') {
+                out.append('\r');
+                start = i + 2;
+            } else if (c == 'e') {
+                out.append('\033');
+                start = i + 2;
+            } else if (c == '\\') {
+                out.append('\\');
+                start = i + 2;
+            } else if (c == '0' && i + 3 < length && s.charAt(i + 2) == '3' && s.charAt(i + 3) == '3') {
+                out.append('\033');
+                start = i + 4;
+            } else {
+                // Not an escape, the backslash is written with the next run
+                appendRun(s, i, i + 1, out);
+                start = i + 1;
+            }
+        }
+        appendRun(s, start, length, out);
+    }
+
+    /**
+     * Same as {@link #unescape(CharSequence, Appendable)}.
+     *
+     * @param s   the escaped code
+     * @param out where to write the original string
+     */
+    public static void unescape(CharSequence s, StringBuilder out) {
+        try {
+            unescape(s, (Appendable) out);
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Same as {@link #unescape(CharSequence, Appendable)}.
+     *
+     * @param s   the escaped code
+     * @param out where to write the original string
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void unescape(CharSequence s, CharBuffer out) {
+        try {
+            unescape(s, (Appendable) out);
+        } catch (IOException e) {
+            // CharBuffer doesn't throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int nextEscaped(CharSequence s, int from) {
+        int length = s.length();
+        for (int i = from; i < length; ++i) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\033' || c == '\\')
+                return i;
+        }
+        return length;
+    }
+
+    private static int nextBackslash(CharSequence s, int from) {
+        int length = s.length();
+        for (int i = from; i < length; ++i)
+            if (s.charAt(i) == '\\')
+                return i;
+        return length;
+    }
+
+    private static String escaped(char c) {
+        switch (c) {
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\033':
+                return "\\033";
+            default:
+                return "\\\\";
+        }
+    }
+
+    /**
+     * Append a part of a string without creating a substring, which
+     * {@link Appendable#append(CharSequence, int, int)} does for writers and buffers.
+     */
+    private static void appendRun(CharSequence s, int start, int end, Appendable out) throws IOException {
+        if (start == end)
+            return;
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(s, start, end);
+        } else if (s instanceof String && out instanceof Writer) {
+            ((Writer) out).write((String) s, start, end - start);
+        } else if (s instanceof String && out instanceof CharBuffer) {
+            ((CharBuffer) out).put((String) s, start, end);
+        } else if (out instanceof Writer || out instanceof CharBuffer) {
+            for (int i = start; i < end; ++i)
+                out.append(s.charAt(i));
+        } else {
+            out.append(s, start, end);
+        }
     }
 
     /**
@@ -75,11 +279,7 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String alternativeFont(int n) {
-
-        if (n < 0 || n > 9)
-            throw new IllegalArgumentException("Font number should be between 0 and 9.");
-
-        return CSI + (n + 10) + 'm';
+        return string().alternativeFont(n).toString();
     }
 
     /**
@@ -89,11 +289,7 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String setMode(int mode) {
-
-        if (mode < 0 || (mode > 7 && mode < 13) || mode > 19)
-            throw new IllegalArgumentException("ColorMode should be in this interval : [0,7]U[13,19].");
-
-        return CSI + '=' + mode + 'h';
+        return string().setMode(mode).toString();
     }
 
     /**
@@ -101,11 +297,7 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String resetMode(int mode) {
-
-        if (mode < 0 || (mode > 7 && mode < 13) || mode > 19)
-            throw new IllegalArgumentException("ColorMode should be in this interval : [0,7]U[13,19].");
-
-        return CSI + '=' + mode + 'l';
+        return string().resetMode(mode).toString();
     }
 
     /**
@@ -115,7 +307,7 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String moveUp(int n) {
-        return CSI + n + "A";
+        return string().moveUp(n).toString();
     }
 
     /**
@@ -125,7 +317,7 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String moveDown(int n) {
-        return CSI + n + "B";
+        return string().moveDown(n).toString();
     }
 
     /**
@@ -135,7 +327,17 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String moveRight(int n) {
-        return CSI + n + "C";
+        return string().moveRight(n).toString();
+    }
+
+    /**
+     * Erase n cells from the cursor with the current background color, the cursor doesn't move.
+     *
+     * @param n the number of cells
+     * @return the corresponding ansi escape code.
+     */
+    public static String eraseChars(int n) {
+        return string().eraseChars(n).toString();
     }
 
     /**
@@ -145,7 +347,7 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String moveLeft(int n) {
-        return CSI + n + "D";
+        return string().moveLeft(n).toString();
     }
 
     /**
@@ -155,7 +357,7 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String moveNextLine(int n) {
-        return CSI + n + "E";
+        return string().moveNextLine(n).toString();
     }
 
     /**
@@ -165,7 +367,7 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String movePreviousLine(int n) {
-        return CSI + n + "F";
+        return string().movePreviousLine(n).toString();
     }
 
     /**
@@ -175,11 +377,7 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String moveHorizontal(int n) {
-
-        if (n <= 0)
-            n = 1;
-
-        return CSI + n + 'G';
+        return string().moveHorizontal(n).toString();
     }
 
     /**
@@ -190,13 +388,14 @@ public final class Anscapes {
      * @return the corresponding ansi escape code.
      */
     public static String cursorPos(int row, int col) {
+        return string().cursorPos(row, col).toString();
+    }
 
-        if (row <= 0)
-            row = 1;
-        if (col <= 0)
-            col = 1;
-
-        return CSI + row + ";" + col + "H";
+    /**
+     * @return a writer to a new builder, its toString is the content of the builder
+     */
+    private static AnsiWriter string() {
+        return AnsiWriter.of(new StringBuilder(16));
     }
 
     /**
@@ -252,75 +451,133 @@ public final class Anscapes {
         return new RgbColor(rgb);
     }
 
+    /**
+     * Create a new AnsiColor from a 256 colors code, see {@link Palette256}.
+     *
+     * @param code the color code, in [0,255]
+     * @return the corresponding ansi escape code
+     */
     public static AnsiColor from256code(int code) {
-        return new AnsiColor() {
-            @Override
-            public Color color() {
-                return null;
-            }
-
-            @Override
-            public int r() {
-                return 0;
-            }
-
-            @Override
-            public int g() {
-                return 0;
-            }
 
-            @Override
-            public int b() {
-                return 0;
-            }
-
-            @Override
-            public String fg() {
-                return CSI + "38;5;" + code + 'm';
-            }
+        if (code < 0 || code > 255)
+            throw new IllegalArgumentException("Color code should be between 0 and 255.");
 
-            @Override
-            public String bg() {
-                return CSI + "48;5;" + code + 'm';
-            }
-        };
+        return new Color256(code);
     }
 
     /**
      * @param c         the color to convert
      * @param threshold distance to evaluate a spot-on
      * @return the nearest ansi color
+     * @see ColorQuantizer
      */
     public static Colors findNearestColor(Color c, int threshold) {
+        return findNearestColor(c.getRGB(), threshold);
+    }
 
-        // TODO allow user to use its own color palette for ansi colors.
-
-        Colors closest = null;
-        float closestDist = Float.MAX_VALUE;
-
-        for (Colors ansic : Colors.values()) {
-
-            float dist = (float) Math.sqrt(Math.pow(ansic.color().getRed() - c.getRed(), 2) +
-                                                   Math.pow(ansic.color().getGreen() - c.getGreen(), 2) +
-                                                   Math.pow(ansic.color().getBlue() - c.getBlue(), 2));
+    /**
+     * @param rgb the packed color to convert
+     * @return the nearest ansi color
+     * @see ColorQuantizer
+     */
+    public static Colors findNearestColor(int rgb) {
+        return findNearestColor(rgb, 0);
+    }
 
-            // Speedup, if low distance its a spot-on
-            if (dist < threshold) {
-                return ansic;
-            }
+    /**
+     * @param rgb       the packed color to convert
+     * @param threshold distance to evaluate a spot-on
+     * @return the nearest ansi color
+     * @see ColorQuantizer
+     */
+    public static Colors findNearestColor(int rgb, int threshold) {
+        return Colors.VALUES[ColorQuantizer.ansi(threshold).nearest(rgb)];
+    }
 
-            if (dist < closestDist) {
-                closestDist = dist;
-                closest = ansic;
-            }
-        }
-        return closest;
+    /**
+     * @param rgb       the packed color to convert
+     * @param threshold distance to evaluate a spot-on, in the units of the metric
+     * @param metric    how colors are compared
+     * @return the nearest ansi color
+     * @see ColorQuantizer
+     */
+    public static Colors findNearestColor(int rgb, int threshold, ColorMetric metric) {
+        return Colors.VALUES[ColorQuantizer.ansi(threshold, metric).nearest(rgb)];
     }
 
     static boolean diffBiased(AnsiColor c1, AnsiColor c2, int bias) {
         if (c1 == null || c2 == null)
             return true;
-        return Math.sqrt(Math.pow(c1.r() - c2.r(), 2) + Math.pow(c1.g() - c2.g(), 2) + Math.pow(c1.b() - c2.b(), 2)) > bias;
+        return !PackedColor.equals(c1.rgb(), c2.rgb(), bias);
+    }
+
+    /**
+     * A color of the 256 colors palette, written with its code.
+     * Codes of the same color are different colors, the terminal may display them differently.
+     */
+    static final class Color256 implements AnsiColor {
+
+        private final int code;
+        private final int rgb;
+
+        Color256(int code) {
+            this.code = code;
+            this.rgb = Palette256.color(code);
+        }
+
+        int code() {
+            return code;
+        }
+
+        @Override
+        public Color color() {
+            return new Color(rgb);
+        }
+
+        @Override
+        public int r() {
+            return PackedColor.red(rgb);
+        }
+
+        @Override
+        public int g() {
+            return PackedColor.green(rgb);
+        }
+
+        @Override
+        public int b() {
+            return PackedColor.blue(rgb);
+        }
+
+        @Override
+        public int rgb() {
+            return rgb;
+        }
+
+        @Override
+        public String fg() {
+            return AnsiWriter.of(new StringBuilder(11)).fg256(code).toString();
+        }
+
+        @Override
+        public String bg() {
+            return AnsiWriter.of(new StringBuilder(11)).bg256(code).toString();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Color256 && code == ((Color256) obj).code;
+        }
+
+        @Override
+        public int hashCode() {
+            return code;
+        }
+
+        @Override
+        public String toString() {
+            return "Color256{" + code + ", " + PackedColor.toString(rgb) + '}';
+        }
     }
 
     /**
@@ -346,12 +603,28 @@ public final class Anscapes {
         CYAN_BRIGHT(96, new Color(86, 255, 255)),
         WHITE_BRIGHT(97, new Color(255, 255, 255));
 
+        static final Colors[] VALUES = values();
+
         private final int value;
         private final Color c;
+        private final int rgb;
+        // Cached sequences
+        private final String fg;
+        private final String bg;
 
         Colors(int value, Color c) {
             this.value = value;
             this.c = c;
+            this.rgb = c.getRGB() & 0xffffff;
+            this.fg = Anscapes.CSI + value + 'm';
+            this.bg = Anscapes.CSI + (value + 10) + 'm';
+        }
+
+        /**
+         * @return the SGR parameter selecting this color as foreground
+         */
+        public int code() {
+            return value;
         }
 
         @Override
@@ -361,27 +634,32 @@ public final class Anscapes {
 
         @Override
         public int r() {
-            return c.getRed();
+            return PackedColor.red(rgb);
         }
 
         @Override
         public int g() {
-            return c.getGreen();
+            return PackedColor.green(rgb);
         }
 
         @Override
         public int b() {
-            return c.getBlue();
+            return PackedColor.blue(rgb);
+        }
+
+        @Override
+        public int rgb() {
+            return rgb;
         }
 
         @Override
         public String fg() {
-            return Anscapes.CSI + value + 'm';
+            return fg;
         }
 
         @Override
         public String bg() {
-            return Anscapes.CSI + (value + 10) + 'm';
+            return bg;
         }
     }
 
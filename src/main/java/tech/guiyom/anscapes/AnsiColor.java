@@ -29,6 +29,13 @@ public interface AnsiColor {
      */
     int b();
 
+    /**
+     * @return this color packed, see {@link PackedColor}
+     */
+    default int rgb() {
+        return PackedColor.rgb(r(), g(), b());
+    }
+
     /**
      * @return the foreground version of this color
      */
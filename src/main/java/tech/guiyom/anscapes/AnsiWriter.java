@@ -0,0 +1,519 @@
+package tech.guiyom.anscapes;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Writes cursor and style sequences straight into a reusable buffer, for user interfaces redrawn many times per second.
+ * Nothing is allocated while writing : numbers are formatted in place, see {@link SgrEncoder}.
+ * <pre>
+ * AnsiWriter out = AnsiWriter.of(buf);
+ * out.cursorPos(1, 1).fg(Anscapes.Colors.GREEN).text("ok").reset();
+ * </pre>
+ * A writer writes at the position of its target, clearing or flipping the target is left to the caller.
+ * Writes past the end of a buffer throw a {@link java.nio.BufferOverflowException}.
+ * <p>
+ * The sequences are the same as the strings of {@link Anscapes}, which are written with this class.
+ */
+public abstract class AnsiWriter {
+
+    private AnsiWriter() {}
+
+    /**
+     * @param buf the buffer to write to
+     * @return a writer of chars to this buffer
+     */
+    public static AnsiWriter of(CharBuffer buf) {
+        return new Chars(buf);
+    }
+
+    /**
+     * @param buf the buffer to write to
+     * @return a writer of UTF-8 bytes to this buffer
+     */
+    public static AnsiWriter of(ByteBuffer buf) {
+        return new Bytes(buf);
+    }
+
+    /**
+     * @param sb the builder to append to
+     * @return a writer appending to this builder, its toString is the content of the builder
+     */
+    public static AnsiWriter of(StringBuilder sb) {
+        return new Builder(sb);
+    }
+
+    /**
+     * @param ascii an ASCII sequence
+     */
+    abstract void put(String ascii);
+
+    abstract void put(char ascii);
+
+    /**
+     * @param n a positive integer to be written in decimal
+     */
+    abstract void putInt(int n);
+
+    /**
+     * Write any text, non ASCII characters are encoded to UTF-8 when writing bytes.
+     *
+     * @param s the text
+     * @return this writer
+     */
+    public abstract AnsiWriter text(CharSequence s);
+
+    /**
+     * Write a 24 bit foreground color sequence.
+     *
+     * @param rgb the packed color, alpha is ignored
+     * @return this writer
+     */
+    public abstract AnsiWriter fgRgb(int rgb);
+
+    /**
+     * Write a 24 bit background color sequence.
+     *
+     * @param rgb the packed color, alpha is ignored
+     * @return this writer
+     */
+    public abstract AnsiWriter bgRgb(int rgb);
+
+    /**
+     * Write a 256 colors foreground sequence.
+     *
+     * @param code the color code, in [0,255]
+     * @return this writer
+     */
+    public abstract AnsiWriter fg256(int code);
+
+    /**
+     * Write a 256 colors background sequence.
+     *
+     * @param code the color code, in [0,255]
+     * @return this writer
+     */
+    public abstract AnsiWriter bg256(int code);
+
+    /**
+     * Write a single parameter SGR sequence : {@code CSI n m}.
+     *
+     * @param code the SGR parameter
+     * @return this writer
+     */
+    public abstract AnsiWriter sgr(int code);
+
+    /**
+     * Write a two parameters SGR sequence : {@code CSI n;n m}.
+     *
+     * @param code1 the first SGR parameter
+     * @param code2 the second SGR parameter
+     * @return this writer
+     */
+    public abstract AnsiWriter sgr(int code1, int code2);
+
+    /**
+     * Write a sequence, such as the constants of {@link Anscapes}.
+     *
+     * @param ascii an ASCII sequence
+     * @return this writer
+     */
+    public AnsiWriter append(String ascii) {
+        put(ascii);
+        return this;
+    }
+
+    /**
+     * Reset every style.
+     *
+     * @return this writer
+     */
+    public AnsiWriter reset() {
+        put(Anscapes.RESET);
+        return this;
+    }
+
+    /**
+     * Write the foreground sequence of a color, the same as {@link AnsiColor#fg()}.
+     *
+     * @param color the color
+     * @return this writer
+     */
+    public AnsiWriter fg(AnsiColor color) {
+        if (color instanceof Anscapes.Colors)
+            return sgr(((Anscapes.Colors) color).code());
+        if (color instanceof Anscapes.Color256)
+            return fg256(((Anscapes.Color256) color).code());
+        if (color.getClass() == RgbColor.class)
+            return fgRgb(color.rgb());
+        put(color.fg());
+        return this;
+    }
+
+    /**
+     * Write the background sequence of a color, the same as {@link AnsiColor#bg()}.
+     *
+     * @param color the color
+     * @return this writer
+     */
+    public AnsiWriter bg(AnsiColor color) {
+        if (color instanceof Anscapes.Colors)
+            return sgr(((Anscapes.Colors) color).code() + 10);
+        if (color instanceof Anscapes.Color256)
+            return bg256(((Anscapes.Color256) color).code());
+        if (color.getClass() == RgbColor.class)
+            return bgRgb(color.rgb());
+        put(color.bg());
+        return this;
+    }
+
+    /**
+     * @see Anscapes#alternativeFont(int)
+     */
+    public AnsiWriter alternativeFont(int n) {
+        if (n < 0 || n > 9)
+            throw new IllegalArgumentException("Font number should be between 0 and 9.");
+        return sgr(n + 10);
+    }
+
+    /**
+     * @see Anscapes#setMode(int)
+     */
+    public AnsiWriter setMode(int mode) {
+        checkMode(mode);
+        put(Anscapes.CSI);
+        put('=');
+        putInt(mode);
+        put('h');
+        return this;
+    }
+
+    /**
+     * @see Anscapes#resetMode(int)
+     */
+    public AnsiWriter resetMode(int mode) {
+        checkMode(mode);
+        put(Anscapes.CSI);
+        put('=');
+        putInt(mode);
+        put('l');
+        return this;
+    }
+
+    /**
+     * @see Anscapes#moveUp(int)
+     */
+    public AnsiWriter moveUp(int n) {
+        return csi(n, 'A');
+    }
+
+    /**
+     * @see Anscapes#moveDown(int)
+     */
+    public AnsiWriter moveDown(int n) {
+        return csi(n, 'B');
+    }
+
+    /**
+     * @see Anscapes#moveRight(int)
+     */
+    public AnsiWriter moveRight(int n) {
+        return csi(n, 'C');
+    }
+
+    /**
+     * @see Anscapes#moveLeft(int)
+     */
+    public AnsiWriter moveLeft(int n) {
+        return csi(n, 'D');
+    }
+
+    /**
+     * @see Anscapes#moveNextLine(int)
+     */
+    public AnsiWriter moveNextLine(int n) {
+        return csi(n, 'E');
+    }
+
+    /**
+     * @see Anscapes#movePreviousLine(int)
+     */
+    public AnsiWriter movePreviousLine(int n) {
+        return csi(n, 'F');
+    }
+
+    /**
+     * @see Anscapes#moveHorizontal(int)
+     */
+    public AnsiWriter moveHorizontal(int n) {
+        return csi(Math.max(1, n), 'G');
+    }
+
+    /**
+     * @see Anscapes#eraseChars(int)
+     */
+    public AnsiWriter eraseChars(int n) {
+        return csi(n, 'X');
+    }
+
+    /**
+     * @see Anscapes#cursorPos(int, int)
+     */
+    public AnsiWriter cursorPos(int row, int col) {
+        put(Anscapes.CSI);
+        putInt(Math.max(1, row));
+        put(';');
+        putInt(Math.max(1, col));
+        put('H');
+        return this;
+    }
+
+    private AnsiWriter csi(int n, char command) {
+        put(Anscapes.CSI);
+        if (n >= 0) {
+            putInt(n);
+        } else {
+            // Meaningless, but written like the strings always were
+            put('-');
+            if (n == Integer.MIN_VALUE)
+                put("2147483648");
+            else
+                putInt(-n);
+        }
+        put(command);
+        return this;
+    }
+
+    private static void checkMode(int mode) {
+        if (mode < 0 || (mode > 7 && mode < 13) || mode > 19)
+            throw new IllegalArgumentException("ColorMode should be in this interval : [0,7]U[13,19].");
+    }
+
+    private static final class Chars extends AnsiWriter {
+
+        private final CharBuffer buf;
+
+        Chars(CharBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        void put(String ascii) {
+            buf.put(ascii);
+        }
+
+        @Override
+        void put(char ascii) {
+            buf.put(ascii);
+        }
+
+        @Override
+        void putInt(int n) {
+            SgrEncoder.putInt(buf, n);
+        }
+
+        @Override
+        public AnsiWriter text(CharSequence s) {
+            if (s instanceof String) {
+                buf.put((String) s);
+            } else {
+                for (int i = 0; i < s.length(); ++i)
+                    buf.put(s.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public AnsiWriter fgRgb(int rgb) {
+            SgrEncoder.fgRgb(buf, rgb);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter bgRgb(int rgb) {
+            SgrEncoder.bgRgb(buf, rgb);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter fg256(int code) {
+            SgrEncoder.fg256(buf, code);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter bg256(int code) {
+            SgrEncoder.bg256(buf, code);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter sgr(int code) {
+            SgrEncoder.sgr(buf, code);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter sgr(int code1, int code2) {
+            SgrEncoder.sgr(buf, code1, code2);
+            return this;
+        }
+    }
+
+    private static final class Bytes extends AnsiWriter {
+
+        private final ByteBuffer buf;
+
+        Bytes(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        void put(String ascii) {
+            SgrEncoder.putAscii(buf, ascii);
+        }
+
+        @Override
+        void put(char ascii) {
+            buf.put((byte) ascii);
+        }
+
+        @Override
+        void putInt(int n) {
+            SgrEncoder.putInt(buf, n);
+        }
+
+        @Override
+        public AnsiWriter text(CharSequence s) {
+            for (int i = 0; i < s.length(); ++i) {
+                char c = s.charAt(i);
+                if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf.put((byte) (0xf0 | (cp >> 18)))
+                       .put((byte) (0x80 | ((cp >> 12) & 0x3f)))
+                       .put((byte) (0x80 | ((cp >> 6) & 0x3f)))
+                       .put((byte) (0x80 | (cp & 0x3f)));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired, like String.getBytes
+                    buf.put((byte) '?');
+                } else {
+                    SgrEncoder.putUtf8(buf, c);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public AnsiWriter fgRgb(int rgb) {
+            SgrEncoder.fgRgb(buf, rgb);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter bgRgb(int rgb) {
+            SgrEncoder.bgRgb(buf, rgb);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter fg256(int code) {
+            SgrEncoder.fg256(buf, code);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter bg256(int code) {
+            SgrEncoder.bg256(buf, code);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter sgr(int code) {
+            SgrEncoder.sgr(buf, code);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter sgr(int code1, int code2) {
+            SgrEncoder.sgr(buf, code1, code2);
+            return this;
+        }
+    }
+
+    private static final class Builder extends AnsiWriter {
+
+        private final StringBuilder sb;
+
+        Builder(StringBuilder sb) {
+            this.sb = sb;
+        }
+
+        @Override
+        void put(String ascii) {
+            sb.append(ascii);
+        }
+
+        @Override
+        void put(char ascii) {
+            sb.append(ascii);
+        }
+
+        @Override
+        void putInt(int n) {
+            // Formatted in place
+            sb.append(n);
+        }
+
+        @Override
+        public AnsiWriter text(CharSequence s) {
+            sb.append(s);
+            return this;
+        }
+
+        @Override
+        public AnsiWriter fgRgb(int rgb) {
+            sb.append(Anscapes.CSI).append("38;2;");
+            return components(rgb);
+        }
+
+        @Override
+        public AnsiWriter bgRgb(int rgb) {
+            sb.append(Anscapes.CSI).append("48;2;");
+            return components(rgb);
+        }
+
+        @Override
+        public AnsiWriter fg256(int code) {
+            sb.append(Anscapes.CSI).append("38;5;").append(code).append('m');
+            return this;
+        }
+
+        @Override
+        public AnsiWriter bg256(int code) {
+            sb.append(Anscapes.CSI).append("48;5;").append(code).append('m');
+            return this;
+        }
+
+        @Override
+        public AnsiWriter sgr(int code) {
+            sb.append(Anscapes.CSI).append(code).append('m');
+            return this;
+        }
+
+        @Override
+        public AnsiWriter sgr(int code1, int code2) {
+            sb.append(Anscapes.CSI).append(code1).append(';').append(code2).append('m');
+            return this;
+        }
+
+        private AnsiWriter components(int rgb) {
+            sb.append((rgb >> 16) & 0xff).append(';').append((rgb >> 8) & 0xff).append(';').append(rgb & 0xff).append('m');
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package tech.guiyom.anscapes;
+
+/**
+ * How the distance between 2 colors is measured, to match palette colors and to compare colors against a bias.
+ * <p>
+ * Distances are always compared squared, and everything expensive is precomputed :
+ * palette matching goes through the tables of {@link ColorQuantizer}, and CIELAB coordinates of any color
+ * are read from a table of 32768 entries indexed like the quantizer tables.
+ * Thresholds and biases are expressed in the units of the metric, see {@link #squared(int)}.
+ */
+public enum ColorMetric {
+
+    /**
+     * Euclidean distance of rgb components, from 0 to 441. Fast but far from what the eye perceives.
+     */
+    EUCLIDEAN {
+        @Override
+        public int distanceSq(int rgb1, int rgb2) {
+            int dr = ((rgb1 >> 16) & 0xff) - ((rgb2 >> 16) & 0xff);
+            int dg = ((rgb1 >> 8) & 0xff) - ((rgb2 >> 8) & 0xff);
+            int db = (rgb1 & 0xff) - (rgb2 & 0xff);
+            return dr * dr + dg * dg + db * db;
+        }
+    },
+    /**
+     * Euclidean distance of rgb components weighted by the mean red component, from 0 to 765.
+     * A cheap approximation of perceived differences, integer only.
+     */
+    REDMEAN {
+        @Override
+        public int distanceSq(int rgb1, int rgb2) {
+            int r1 = (rgb1 >> 16) & 0xff;
+            int r2 = (rgb2 >> 16) & 0xff;
+            int rmean = (r1 + r2) >> 1;
+            int dr = r1 - r2;
+            int dg = ((rgb1 >> 8) & 0xff) - ((rgb2 >> 8) & 0xff);
+            int db = (rgb1 & 0xff) - (rgb2 & 0xff);
+            return (((512 + rmean) * dr * dr) >> 8) + 4 * dg * dg + (((767 - rmean) * db * db) >> 8);
+        }
+    },
+    /**
+     * CIE76 ΔE, the euclidean distance in the CIELAB color space, from 0 to about 260.
+     * A difference of about 2.3 is just noticeable. Colors are looked up with 5 bits per component.
+     */
+    CIELAB {
+        @Override
+        public int distanceSq(int rgb1, int rgb2) {
+            int lab1 = Lab.TABLE[index(rgb1)];
+            int lab2 = Lab.TABLE[index(rgb2)];
+            int dl = (lab1 >>> 20) - (lab2 >>> 20);
+            int da = ((lab1 >> 10) & 0x3ff) - ((lab2 >> 10) & 0x3ff);
+            int db = (lab1 & 0x3ff) - (lab2 & 0x3ff);
+            return dl * dl + da * da + db * db;
+        }
+
+        @Override
+        public int squared(int distance) {
+            // Coordinates are stored in quarter units
+            return 16 * distance * distance;
+        }
+    };
+
+    /**
+     * @param rgb1 a packed color, alpha is ignored
+     * @param rgb2 another packed color, alpha is ignored
+     * @return the squared distance between both colors, in the units of {@link #squared(int)}
+     */
+    public abstract int distanceSq(int rgb1, int rgb2);
+
+    /**
+     * @param distance a distance (threshold, bias) in the units of this metric
+     * @return the same distance squared, comparable to {@link #distanceSq(int, int)}
+     */
+    public int squared(int distance) {
+        return distance * distance;
+    }
+
+    /**
+     * Index of a color in 32768 entries tables, 5 bits per component.
+     */
+    static int index(int rgb) {
+        return ((rgb >> 9) & 0x7c00) | ((rgb >> 6) & 0x3e0) | ((rgb >> 3) & 0x1f);
+    }
+
+    /**
+     * Scale a 5 bit component back to 8 bit.
+     */
+    static int expand(int c) {
+        return (c << 3) | (c >> 2);
+    }
+
+    /**
+     * CIELAB coordinates of every 15 bit color, only computed when the metric is first used.
+     * Coordinates are packed in quarter units : L on 10 bits, a and b offset by 512 on 10 bits each.
+     */
+    private static final class Lab {
+
+        static final int[] TABLE = new int[1 << 15];
+
+        static {
+            for (int i = 0; i < TABLE.length; ++i)
+                TABLE[i] = lab(expand(i >> 10) << 16 | expand((i >> 5) & 0x1f) << 8 | expand(i & 0x1f));
+        }
+
+        /**
+         * sRGB to CIELAB, D65 white point.
+         */
+        static int lab(int rgb) {
+            double r = linear((rgb >> 16) & 0xff);
+            double g = linear((rgb >> 8) & 0xff);
+            double b = linear(rgb & 0xff);
+            double fx = f((0.4124 * r + 0.3576 * g + 0.1805 * b) / 0.95047);
+            double fy = f(0.2126 * r + 0.7152 * g + 0.0722 * b);
+            double fz = f((0.0193 * r + 0.1192 * g + 0.9505 * b) / 1.08883);
+            int l = (int) Math.round(4 * (116 * fy - 16));
+            int a = (int) Math.round(4 * 500 * (fx - fy)) + 512;
+            int bb = (int) Math.round(4 * 200 * (fy - fz)) + 512;
+            return Math.max(0, l) << 20 | a << 10 | bb;
+        }
+
+        private static double linear(int c) {
+            double v = c / 255.0;
+            return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+        }
+
+        private static double f(double t) {
+            return t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116;
+        }
+    }
+}
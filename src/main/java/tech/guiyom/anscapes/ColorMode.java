@@ -6,6 +6,10 @@ public enum ColorMode {
      * Only 16 colors
      */
     ANSI,
+    /**
+     * The xterm 256 colors palette
+     */
+    PALETTE_256,
     /**
      * The full range of colors, not supported by all terminals
      */
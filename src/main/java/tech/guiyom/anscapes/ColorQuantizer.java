@@ -0,0 +1,183 @@
+package tech.guiyom.anscapes;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Maps any color to the nearest color of a palette using a precomputed lookup table.
+ * <p>
+ * The table is indexed by the 5 most significant bits of each component (32768 entries),
+ * so matching a color costs a single array load, whatever the {@link ColorMetric} used to build the table.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class ColorQuantizer {
+
+    private static final int BITS = 5;
+    private static final int LEVELS = 1 << BITS;
+
+    /**
+     * Number of ANSI quantizers kept besides the default one, each table takes 32 KB.
+     * Thresholds and metrics are chosen by callers.
+     */
+    private static final int ANSI_CACHE_SIZE = 8;
+
+    private static final ColorQuantizer ANSI = createAnsi(0, ColorMetric.EUCLIDEAN);
+
+    private static final Map<Long, ColorQuantizer> ANSI_CACHE = new ConcurrentHashMap<>();
+    // Keys of ANSI_CACHE, oldest first
+    private static final Queue<Long> ANSI_KEYS = new ConcurrentLinkedQueue<>();
+
+    private final int[] palette;
+    private final byte[] table;
+
+    /**
+     * Create a quantizer that always picks the nearest palette color.
+     *
+     * @param palette the palette as packed rgb colors, at most 256 entries
+     */
+    public ColorQuantizer(int[] palette) {
+        this(palette, 0);
+    }
+
+    /**
+     * Create a quantizer for the given palette.
+     *
+     * @param palette   the palette as packed rgb colors, at most 256 entries
+     * @param threshold distance to evaluate a spot-on, the first palette color closer than this is picked
+     *                  even if it is not the nearest one
+     */
+    public ColorQuantizer(int[] palette, int threshold) {
+        this(palette, threshold, ColorMetric.EUCLIDEAN);
+    }
+
+    /**
+     * Create a quantizer for the given palette.
+     *
+     * @param palette   the palette as packed rgb colors, at most 256 entries
+     * @param threshold distance to evaluate a spot-on, in the units of the metric
+     * @param metric    how colors are compared, only used to build the table
+     */
+    public ColorQuantizer(int[] palette, int threshold, ColorMetric metric) {
+
+        if (palette.length == 0 || palette.length > 256)
+            throw new IllegalArgumentException("Palette size should be between 1 and 256.");
+
+        this.palette = palette.clone();
+        this.table = new byte[LEVELS * LEVELS * LEVELS];
+
+        int thresholdSq = metric.squared(threshold);
+        for (int r = 0; r < LEVELS; ++r)
+            for (int g = 0; g < LEVELS; ++g)
+                for (int b = 0; b < LEVELS; ++b) {
+                    int rgb = ColorMetric.expand(r) << 16 | ColorMetric.expand(g) << 8 | ColorMetric.expand(b);
+                    table[(r << (2 * BITS)) | (g << BITS) | b] = (byte) search(rgb, thresholdSq, metric);
+                }
+    }
+
+    /**
+     * @return the shared quantizer for the 16 {@link Anscapes.Colors}, palette indices are the enum ordinals
+     */
+    public static ColorQuantizer ansi() {
+        return ANSI;
+    }
+
+    /**
+     * @param threshold distance to evaluate a spot-on
+     * @return a quantizer for the 16 {@link Anscapes.Colors}, palette indices are the enum ordinals,
+     * see {@link #ansi(int, ColorMetric)}
+     */
+    public static ColorQuantizer ansi(int threshold) {
+        return ansi(threshold, ColorMetric.EUCLIDEAN);
+    }
+
+    /**
+     * @param threshold distance to evaluate a spot-on, in the units of the metric
+     * @param metric    how colors are compared
+     * @return a quantizer for the 16 {@link Anscapes.Colors}, palette indices are the enum ordinals.
+     * The default one is always shared, the quantizers of the last few other thresholds built are kept
+     * and the older ones are built again.
+     */
+    public static ColorQuantizer ansi(int threshold, ColorMetric metric) {
+        if (threshold == 0 && metric == ColorMetric.EUCLIDEAN)
+            return ANSI;
+
+        Long key = (long) metric.ordinal() << 32 | (threshold & 0xffffffffL);
+        ColorQuantizer quantizer = ANSI_CACHE.get(key);
+        if (quantizer != null)
+            return quantizer;
+
+        // Threads racing here build the same table, only the first one is kept
+        quantizer = createAnsi(threshold, metric);
+        ColorQuantizer previous = ANSI_CACHE.putIfAbsent(key, quantizer);
+        if (previous != null)
+            return previous;
+
+        ANSI_KEYS.add(key);
+        while (ANSI_CACHE.size() > ANSI_CACHE_SIZE) {
+            Long oldest = ANSI_KEYS.poll();
+            if (oldest == null)
+                break;
+            ANSI_CACHE.remove(oldest);
+        }
+        return quantizer;
+    }
+
+    private static ColorQuantizer createAnsi(int threshold, ColorMetric metric) {
+        Anscapes.Colors[] colors = Anscapes.Colors.values();
+        int[] palette = new int[colors.length];
+        for (int i = 0; i < colors.length; ++i)
+            palette[i] = colors[i].rgb();
+        return new ColorQuantizer(palette, threshold, metric);
+    }
+
+    private int search(int rgb, int thresholdSq, ColorMetric metric) {
+        int closest = 0;
+        int closestDist = Integer.MAX_VALUE;
+        for (int i = 0; i < palette.length; ++i) {
+            int dist = metric.distanceSq(palette[i], rgb);
+
+            // Spot-on
+            if (dist < thresholdSq)
+                return i;
+
+            if (dist < closestDist) {
+                closestDist = dist;
+                closest = i;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * @param rgb the packed color, alpha is ignored
+     * @return the index of the nearest palette color
+     */
+    public int nearest(int rgb) {
+        return table[ColorMetric.index(rgb)] & 0xff;
+    }
+
+    /**
+     * @param rgb the packed color, alpha is ignored
+     * @return the nearest palette color, packed
+     */
+    public int nearestColor(int rgb) {
+        return palette[nearest(rgb)];
+    }
+
+    /**
+     * @param index the palette index
+     * @return the palette color at this index, packed
+     */
+    public int color(int index) {
+        return palette[index];
+    }
+
+    /**
+     * @return the number of colors in the palette
+     */
+    public int size() {
+        return palette.length;
+    }
+}
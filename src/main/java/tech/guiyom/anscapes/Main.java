@@ -1,14 +1,79 @@
 package tech.guiyom.anscapes;
 
 import tech.guiyom.anscapes.renderer.ImageRenderer;
+import tech.guiyom.anscapes.renderer.PixelFormat;
+import tech.guiyom.anscapes.video.PlaybackStats;
+import tech.guiyom.anscapes.video.RawVideoFile;
+import tech.guiyom.anscapes.video.VideoPlayer;
 
 import javax.imageio.ImageIO;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Paths;
 
 public class Main {
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args[0].equals("video")) {
+            video(args);
+            return;
+        }
+        if (args[0].equals("play")) {
+            play(args);
+            return;
+        }
         ImageRenderer converter = ImageRenderer.createRenderer(ColorMode.valueOf(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
-        System.out.println(Anscapes.escape(converter.renderString(ImageIO.read(new File(args[3])))));
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        Anscapes.escape(converter.renderString(ImageIO.read(new File(args[3]))), out);
+        out.write(System.lineSeparator());
+        out.flush();
+    }
+
+    /**
+     * Play raw frames from stdin, e.g. :
+     * <pre>
+     * ffmpeg -i video.mp4 -f rawvideo -pix_fmt rgb24 - | java -jar anscapes.jar video RGB 160 90 1920 1080 RGB24 30
+     * </pre>
+     * Arguments : color mode, target width, target height, frame width, frame height, pixel format, fps
+     */
+    private static void video(String[] args) throws IOException, InterruptedException {
+        ImageRenderer renderer = ImageRenderer.createRenderer(ColorMode.valueOf(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        VideoPlayer player = new VideoPlayer(renderer,
+                Integer.parseInt(args[4]),
+                Integer.parseInt(args[5]),
+                PixelFormat.valueOf(args[6]),
+                Double.parseDouble(args[7]));
+        PlaybackStats stats = player.play(new BufferedInputStream(System.in, 1 << 16),
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16));
+        System.err.println(stats);
+    }
+
+    /**
+     * Play a range of frames from a raw frames file, e.g. :
+     * <pre>
+     * ffmpeg -i video.mp4 -f rawvideo -pix_fmt rgb24 video.raw
+     * java -jar anscapes.jar play RGB 160 90 video.raw 1920 1080 RGB24 30 300 600
+     * </pre>
+     * Arguments : color mode, target width, target height, file, frame width, frame height, pixel format, fps,
+     * optionally the first frame and the last frame (exclusive)
+     */
+    private static void play(String[] args) throws IOException, InterruptedException {
+        ImageRenderer renderer = ImageRenderer.createRenderer(ColorMode.valueOf(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        try (RawVideoFile file = new RawVideoFile(Paths.get(args[4]),
+                Integer.parseInt(args[5]),
+                Integer.parseInt(args[6]),
+                PixelFormat.valueOf(args[7]))) {
+            VideoPlayer player = new VideoPlayer(renderer, file.getWidth(), file.getHeight(), file.getFormat(), Double.parseDouble(args[8]));
+            long from = args.length > 9 ? Long.parseLong(args[9]) : 0;
+            long to = args.length > 10 ? Long.parseLong(args[10]) : file.getFrameCount();
+            PlaybackStats stats = player.play(file, from, to, new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16));
+            System.err.println(stats);
+        }
     }
 }
@@ -0,0 +1,116 @@
+package tech.guiyom.anscapes;
+
+/**
+ * Colors as packed ints ({@code 0xRRGGBB}, like {@link java.awt.Color#getRGB()} with alpha ignored),
+ * the representation renderers work with. Nothing here allocates a color object.
+ * <p>
+ * {@link AnsiColor} is a view of the same colors for the public API, see {@link AnsiColor#rgb()}.
+ * Sequences can be written to buffers with {@link SgrEncoder} or {@link AnsiWriter}.
+ */
+public final class PackedColor {
+
+    private PackedColor() {}
+
+    /**
+     * @param r the red component, in [0,255]
+     * @param g the green component, in [0,255]
+     * @param b the blue component, in [0,255]
+     * @return the packed color
+     */
+    public static int rgb(int r, int g, int b) {
+        return (r & 0xff) << 16 | (g & 0xff) << 8 | (b & 0xff);
+    }
+
+    public static int red(int rgb) {
+        return (rgb >> 16) & 0xff;
+    }
+
+    public static int green(int rgb) {
+        return (rgb >> 8) & 0xff;
+    }
+
+    public static int blue(int rgb) {
+        return rgb & 0xff;
+    }
+
+    /**
+     * @param rgb1 a packed color, alpha is ignored
+     * @param rgb2 another packed color, alpha is ignored
+     * @return the squared euclidean distance of both colors
+     */
+    public static int distanceSq(int rgb1, int rgb2) {
+        return ColorMetric.EUCLIDEAN.distanceSq(rgb1, rgb2);
+    }
+
+    /**
+     * Check if colors are close enough to be considered the same, comparing squared distances.
+     *
+     * @param rgb1 a packed color, alpha is ignored
+     * @param rgb2 another packed color, alpha is ignored
+     * @param bias the euclidean distance under which colors are the same
+     * @return if the colors are the same within the bias
+     */
+    public static boolean equals(int rgb1, int rgb2, int bias) {
+        if (bias == 0)
+            return ((rgb1 ^ rgb2) & 0xffffff) == 0;
+        return distanceSq(rgb1, rgb2) <= bias * bias;
+    }
+
+    /**
+     * @param rgb1   a packed color, alpha is ignored
+     * @param rgb2   another packed color, alpha is ignored
+     * @param bias   the distance under which colors are the same, in the units of the metric
+     * @param metric how colors are compared
+     * @return if the colors are the same within the bias
+     */
+    public static boolean equals(int rgb1, int rgb2, int bias, ColorMetric metric) {
+        if (bias == 0)
+            return ((rgb1 ^ rgb2) & 0xffffff) == 0;
+        return metric.distanceSq(rgb1, rgb2) <= metric.squared(bias);
+    }
+
+    /**
+     * @param rgb the packed color, alpha is ignored
+     * @return the 24 bit foreground sequence, same as {@link AnsiColor#fg()}
+     */
+    public static String fg(int rgb) {
+        return AnsiWriter.of(new StringBuilder(19)).fgRgb(rgb).toString();
+    }
+
+    /**
+     * @param rgb the packed color, alpha is ignored
+     * @return the 24 bit background sequence, same as {@link AnsiColor#bg()}
+     */
+    public static String bg(int rgb) {
+        return AnsiWriter.of(new StringBuilder(19)).bgRgb(rgb).toString();
+    }
+
+    /**
+     * Append the 24 bit foreground sequence.
+     *
+     * @param sb  the builder to append to
+     * @param rgb the packed color, alpha is ignored
+     */
+    public static void fg(StringBuilder sb, int rgb) {
+        AnsiWriter.of(sb).fgRgb(rgb);
+    }
+
+    /**
+     * Append the 24 bit background sequence.
+     *
+     * @param sb  the builder to append to
+     * @param rgb the packed color, alpha is ignored
+     */
+    public static void bg(StringBuilder sb, int rgb) {
+        AnsiWriter.of(sb).bgRgb(rgb);
+    }
+
+    /**
+     * @param rgb the packed color
+     * @return the color as {@code #rrggbb}
+     */
+    public static String toString(int rgb) {
+        String hex = Integer.toHexString(rgb & 0xffffff);
+        return "#000000".substring(0, 7 - hex.length()) + hex;
+    }
+}
@@ -0,0 +1,122 @@
+package tech.guiyom.anscapes;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The xterm 256 colors palette.
+ * <ul>
+ * <li>0-15 : the 16 ansi colors, see {@link Anscapes.Colors}</li>
+ * <li>16-231 : a 6x6x6 color cube</li>
+ * <li>232-255 : a grayscale ramp from dark to light</li>
+ * </ul>
+ * Matching only ever considers the cube and the grayscale ramp since the 16 first colors are different on every terminal.
+ */
+public final class Palette256 {
+
+    private static final int[] CUBE_LEVELS = { 0, 95, 135, 175, 215, 255 };
+    private static final int GRAY_LEVELS = 24;
+
+    /**
+     * Nearest cube level for each component value.
+     */
+    private static final byte[] CUBE_INDEX = new byte[256];
+    /**
+     * Nearest grayscale ramp step for each gray value.
+     */
+    private static final byte[] GRAY_INDEX = new byte[256];
+
+    private static final int[] PALETTE = new int[256];
+
+    private static final Map<ColorMetric, ColorQuantizer> QUANTIZERS = new ConcurrentHashMap<>();
+
+    static {
+        for (int v = 0; v < 256; ++v) {
+            int level = 0;
+            for (int i = 1; i < CUBE_LEVELS.length; ++i)
+                if (Math.abs(CUBE_LEVELS[i] - v) < Math.abs(CUBE_LEVELS[level] - v))
+                    level = i;
+            CUBE_INDEX[v] = (byte) level;
+
+            int step = Math.round((v - 8) / 10f);
+            GRAY_INDEX[v] = (byte) Math.max(0, Math.min(GRAY_LEVELS - 1, step));
+        }
+
+        Anscapes.Colors[] colors = Anscapes.Colors.values();
+        for (int i = 0; i < colors.length; ++i)
+            PALETTE[i] = colors[i].rgb();
+        for (int i = 0; i < 216; ++i)
+            PALETTE[16 + i] = (CUBE_LEVELS[i / 36] << 16) | (CUBE_LEVELS[(i / 6) % 6] << 8) | CUBE_LEVELS[i % 6];
+        for (int i = 0; i < GRAY_LEVELS; ++i) {
+            int v = grayLevel(i);
+            PALETTE[232 + i] = (v << 16) | (v << 8) | v;
+        }
+    }
+
+    private Palette256() {}
+
+    private static int grayLevel(int step) {
+        return 8 + step * 10;
+    }
+
+    /**
+     * Find the nearest color without searching the palette.
+     *
+     * @param rgb the packed color, alpha is ignored
+     * @return the nearest 256 colors code, in [16,255]
+     */
+    public static int nearest(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+
+        // Nearest cube color
+        int ri = CUBE_INDEX[r];
+        int gi = CUBE_INDEX[g];
+        int bi = CUBE_INDEX[b];
+        int dr = CUBE_LEVELS[ri] - r;
+        int dg = CUBE_LEVELS[gi] - g;
+        int db = CUBE_LEVELS[bi] - b;
+        int cubeDist = dr * dr + dg * dg + db * db;
+
+        // Nearest gray
+        int step = GRAY_INDEX[(r + g + b) / 3];
+        int gray = grayLevel(step);
+        dr = gray - r;
+        dg = gray - g;
+        db = gray - b;
+        int grayDist = dr * dr + dg * dg + db * db;
+
+        return grayDist < cubeDist ? 232 + step : 16 + 36 * ri + 6 * gi + bi;
+    }
+
+    /**
+     * Find the nearest color with another metric. Prefer holding on to {@link #quantizer(ColorMetric)} in loops.
+     *
+     * @param rgb    the packed color, alpha is ignored
+     * @param metric how colors are compared
+     * @return the nearest 256 colors code, in [16,255]
+     */
+    public static int nearest(int rgb, ColorMetric metric) {
+        if (metric == ColorMetric.EUCLIDEAN)
+            return nearest(rgb);
+        return 16 + quantizer(metric).nearest(rgb);
+    }
+
+    /**
+     * @param metric how colors are compared
+     * @return the shared quantizer for the cube and the grayscale ramp, palette index {@code i} is the code {@code 16 + i}
+     */
+    public static ColorQuantizer quantizer(ColorMetric metric) {
+        return QUANTIZERS.computeIfAbsent(metric, m -> new ColorQuantizer(Arrays.copyOfRange(PALETTE, 16, 256), 0, m));
+    }
+
+    /**
+     * @param code the 256 colors code
+     * @return the rgb equivalent of this code, packed
+     */
+    public static int color(int code) {
+        return PALETTE[code];
+    }
+}
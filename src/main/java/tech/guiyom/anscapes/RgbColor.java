@@ -2,29 +2,28 @@ package tech.guiyom.anscapes;
 
 import java.awt.Color;
 
+/**
+ * A 24 bit color, a view of a packed color (see {@link PackedColor}).
+ */
 public class RgbColor implements AnsiColor {
 
-    private final int r;
-    private final int g;
-    private final int b;
+    private final int rgb;
 
     public RgbColor(Color c) {
-        this(c.getRed(), c.getGreen(), c.getBlue());
+        this(c.getRGB());
     }
 
     public RgbColor(int r, int g, int b) {
-        this.r = r;
-        this.g = g;
-        this.b = b;
+        this.rgb = PackedColor.rgb(r, g, b);
     }
 
     /**
      * Uses a color parsing method similar to {@link Color#Color(int)}
      *
-     * @param rgb
+     * @param rgb the packed color, alpha is ignored
      */
     public RgbColor(int rgb) {
-        this((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+        this.rgb = rgb & 0xffffff;
     }
 
     /**
@@ -34,43 +33,55 @@ public class RgbColor implements AnsiColor {
      */
     @Override
     public Color color() {
-        return new Color(r, g, b);
+        return new Color(rgb);
     }
 
     @Override
     public int r() {
-        return r;
+        return PackedColor.red(rgb);
     }
 
     @Override
     public int g() {
-        return g;
+        return PackedColor.green(rgb);
     }
 
     @Override
     public int b() {
-        return b;
+        return PackedColor.blue(rgb);
+    }
+
+    @Override
+    public int rgb() {
+        return rgb;
     }
 
     @Override
     public String fg() {
-        return Anscapes.CSI + "38;2;" + r() + ';' + g() + ';' + b() + 'm';
+        return PackedColor.fg(rgb);
     }
 
     @Override
     public String bg() {
-        return Anscapes.CSI + "48;2;" + r() + ';' + g() + ';' + b() + 'm';
+        return PackedColor.bg(rgb);
     }
 
+    /**
+     * Only equal to a color of the same class, colors of other types are compared with {@link #rgb()}
+     * or {@link PackedColor#equals(int, int, int)}.
+     */
     @Override
     public boolean equals(Object obj) {
-        if (obj instanceof RgbColor) {
-            RgbColor other = (RgbColor) obj;
-            return r == other.r && g == other.g && b == other.b;
-        } else if (obj instanceof AnsiColor) {
-            AnsiColor other = (AnsiColor) obj;
-            return r == other.r() && g == other.g() && b == other.b();
-        }
-        return false;
+        return obj != null && getClass() == obj.getClass() && rgb == ((RgbColor) obj).rgb;
+    }
+
+    @Override
+    public int hashCode() {
+        return rgb;
+    }
+
+    @Override
+    public String toString() {
+        return PackedColor.toString(rgb);
     }
 }
@@ -0,0 +1,312 @@
+package tech.guiyom.anscapes;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Writes SGR (Select Graphic Rendition) sequences straight into an output buffer.
+ * Nothing is allocated here, decimal digits for color components come from a precomputed table.
+ * <p>
+ * Every method comes in two flavors : one for {@link CharBuffer} and one writing ASCII bytes to a {@link ByteBuffer}.
+ */
+public final class SgrEncoder {
+
+    /**
+     * Decimal representation of every integer in [0,255].
+     */
+    private static final char[][] DIGITS = new char[256][];
+    private static final byte[][] DIGIT_BYTES = new byte[256][];
+
+    private static final char[] CSI = Anscapes.CSI.toCharArray(),
+            FG_RGB = (Anscapes.CSI + "38;2;").toCharArray(),
+            BG_RGB = (Anscapes.CSI + "48;2;").toCharArray(),
+            FG_256 = (Anscapes.CSI + "38;5;").toCharArray(),
+            BG_256 = (Anscapes.CSI + "48;5;").toCharArray();
+
+    private static final char[] BG_RGB_PARAMS = ";48;2;".toCharArray(),
+            BG_256_PARAMS = ";48;5;".toCharArray();
+
+    private static final byte[] CSI_BYTES = ascii(CSI),
+            BG_RGB_PARAMS_BYTES = ascii(BG_RGB_PARAMS),
+            BG_256_PARAMS_BYTES = ascii(BG_256_PARAMS),
+            FG_RGB_BYTES = ascii(FG_RGB),
+            BG_RGB_BYTES = ascii(BG_RGB),
+            FG_256_BYTES = ascii(FG_256),
+            BG_256_BYTES = ascii(BG_256);
+
+    static {
+        for (int i = 0; i < DIGITS.length; ++i) {
+            DIGITS[i] = Integer.toString(i).toCharArray();
+            DIGIT_BYTES[i] = ascii(DIGITS[i]);
+        }
+    }
+
+    private SgrEncoder() {}
+
+    private static byte[] ascii(char[] chars) {
+        byte[] bytes = new byte[chars.length];
+        for (int i = 0; i < chars.length; ++i)
+            bytes[i] = (byte) chars[i];
+        return bytes;
+    }
+
+    /**
+     * Write the decimal representation of a positive integer.
+     *
+     * @param out the output buffer
+     * @param n   the number to write, must be positive
+     */
+    public static void putInt(CharBuffer out, int n) {
+        if (n < 256) {
+            out.put(DIGITS[n]);
+            return;
+        }
+        // Count digits then write them backward
+        int len = 1;
+        for (int i = n; i >= 10; i /= 10)
+            ++len;
+        if (out.remaining() < len)
+            throw new BufferOverflowException();
+        int start = out.position();
+        for (int i = start + len - 1; i >= start; --i) {
+            out.put(i, (char) ('0' + n % 10));
+            n /= 10;
+        }
+        out.position(start + len);
+    }
+
+    /**
+     * Write a 24 bit foreground color sequence : {@code CSI 38;2;r;g;b m}.
+     *
+     * @param out the output buffer
+     * @param rgb the packed color, alpha is ignored
+     */
+    public static void fgRgb(CharBuffer out, int rgb) {
+        out.put(FG_RGB);
+        putComponents(out, rgb);
+    }
+
+    /**
+     * Write a 24 bit background color sequence : {@code CSI 48;2;r;g;b m}.
+     *
+     * @param out the output buffer
+     * @param rgb the packed color, alpha is ignored
+     */
+    public static void bgRgb(CharBuffer out, int rgb) {
+        out.put(BG_RGB);
+        putComponents(out, rgb);
+    }
+
+    /**
+     * Write a 256 colors foreground sequence : {@code CSI 38;5;n m}.
+     *
+     * @param out  the output buffer
+     * @param code the color code, in [0,255]
+     */
+    public static void fg256(CharBuffer out, int code) {
+        out.put(FG_256).put(DIGITS[code]).put('m');
+    }
+
+    /**
+     * Write a 256 colors background sequence : {@code CSI 48;5;n m}.
+     *
+     * @param out  the output buffer
+     * @param code the color code, in [0,255]
+     */
+    public static void bg256(CharBuffer out, int code) {
+        out.put(BG_256).put(DIGITS[code]).put('m');
+    }
+
+    /**
+     * Write both 24 bit colors in a single sequence : {@code CSI 38;2;r;g;b;48;2;r;g;b m}.
+     *
+     * @param out the output buffer
+     * @param fg  the packed foreground color, alpha is ignored
+     * @param bg  the packed background color, alpha is ignored
+     */
+    public static void fgBgRgb(CharBuffer out, int fg, int bg) {
+        out.put(FG_RGB);
+        putComponents(out, fg, BG_RGB_PARAMS);
+        putComponents(out, bg);
+    }
+
+    /**
+     * Write both 256 colors in a single sequence : {@code CSI 38;5;n;48;5;n m}.
+     *
+     * @param out the output buffer
+     * @param fg  the foreground color code, in [0,255]
+     * @param bg  the background color code, in [0,255]
+     */
+    public static void fgBg256(CharBuffer out, int fg, int bg) {
+        out.put(FG_256).put(DIGITS[fg]).put(BG_256_PARAMS).put(DIGITS[bg]).put('m');
+    }
+
+    /**
+     * Write a single parameter SGR sequence : {@code CSI n m}.
+     *
+     * @param out  the output buffer
+     * @param code the SGR parameter
+     */
+    public static void sgr(CharBuffer out, int code) {
+        out.put(CSI);
+        putInt(out, code);
+        out.put('m');
+    }
+
+    /**
+     * Write a two parameters SGR sequence : {@code CSI n;n m}.
+     *
+     * @param out   the output buffer
+     * @param code1 the first SGR parameter
+     * @param code2 the second SGR parameter
+     */
+    public static void sgr(CharBuffer out, int code1, int code2) {
+        out.put(CSI);
+        putInt(out, code1);
+        out.put(';');
+        putInt(out, code2);
+        out.put('m');
+    }
+
+    private static void putComponents(CharBuffer out, int rgb) {
+        out.put(DIGITS[(rgb >> 16) & 0xff]).put(';')
+           .put(DIGITS[(rgb >> 8) & 0xff]).put(';')
+           .put(DIGITS[rgb & 0xff]).put('m');
+    }
+
+    private static void putComponents(CharBuffer out, int rgb, char[] end) {
+        out.put(DIGITS[(rgb >> 16) & 0xff]).put(';')
+           .put(DIGITS[(rgb >> 8) & 0xff]).put(';')
+           .put(DIGITS[rgb & 0xff]).put(end);
+    }
+
+    /**
+     * Write ASCII characters.
+     *
+     * @param out   the output buffer
+     * @param ascii the characters to write, must all be ASCII
+     */
+    public static void putAscii(ByteBuffer out, CharSequence ascii) {
+        for (int i = 0; i < ascii.length(); ++i)
+            out.put((byte) ascii.charAt(i));
+    }
+
+    /**
+     * Write the UTF-8 encoding of a character of the Basic Multilingual Plane.
+     *
+     * @param out the output buffer
+     * @param c   the character to write, must not be a surrogate
+     */
+    public static void putUtf8(ByteBuffer out, char c) {
+        if (c < 0x80) {
+            out.put((byte) c);
+        } else if (c < 0x800) {
+            out.put((byte) (0xc0 | (c >> 6)))
+               .put((byte) (0x80 | (c & 0x3f)));
+        } else {
+            out.put((byte) (0xe0 | (c >> 12)))
+               .put((byte) (0x80 | ((c >> 6) & 0x3f)))
+               .put((byte) (0x80 | (c & 0x3f)));
+        }
+    }
+
+    /**
+     * @see #putInt(CharBuffer, int)
+     */
+    public static void putInt(ByteBuffer out, int n) {
+        if (n < 256) {
+            out.put(DIGIT_BYTES[n]);
+            return;
+        }
+        int len = 1;
+        for (int i = n; i >= 10; i /= 10)
+            ++len;
+        if (out.remaining() < len)
+            throw new BufferOverflowException();
+        int start = out.position();
+        for (int i = start + len - 1; i >= start; --i) {
+            out.put(i, (byte) ('0' + n % 10));
+            n /= 10;
+        }
+        out.position(start + len);
+    }
+
+    /**
+     * @see #fgRgb(CharBuffer, int)
+     */
+    public static void fgRgb(ByteBuffer out, int rgb) {
+        out.put(FG_RGB_BYTES);
+        putComponents(out, rgb);
+    }
+
+    /**
+     * @see #bgRgb(CharBuffer, int)
+     */
+    public static void bgRgb(ByteBuffer out, int rgb) {
+        out.put(BG_RGB_BYTES);
+        putComponents(out, rgb);
+    }
+
+    /**
+     * @see #fg256(CharBuffer, int)
+     */
+    public static void fg256(ByteBuffer out, int code) {
+        out.put(FG_256_BYTES).put(DIGIT_BYTES[code]).put((byte) 'm');
+    }
+
+    /**
+     * @see #bg256(CharBuffer, int)
+     */
+    public static void bg256(ByteBuffer out, int code) {
+        out.put(BG_256_BYTES).put(DIGIT_BYTES[code]).put((byte) 'm');
+    }
+
+    /**
+     * @see #fgBgRgb(CharBuffer, int, int)
+     */
+    public static void fgBgRgb(ByteBuffer out, int fg, int bg) {
+        out.put(FG_RGB_BYTES);
+        putComponents(out, fg, BG_RGB_PARAMS_BYTES);
+        putComponents(out, bg);
+    }
+
+    /**
+     * @see #fgBg256(CharBuffer, int, int)
+     */
+    public static void fgBg256(ByteBuffer out, int fg, int bg) {
+        out.put(FG_256_BYTES).put(DIGIT_BYTES[fg]).put(BG_256_PARAMS_BYTES).put(DIGIT_BYTES[bg]).put((byte) 'm');
+    }
+
+    /**
+     * @see #sgr(CharBuffer, int)
+     */
+    public static void sgr(ByteBuffer out, int code) {
+        out.put(CSI_BYTES);
+        putInt(out, code);
+        out.put((byte) 'm');
+    }
+
+    /**
+     * @see #sgr(CharBuffer, int, int)
+     */
+    public static void sgr(ByteBuffer out, int code1, int code2) {
+        out.put(CSI_BYTES);
+        putInt(out, code1);
+        out.put((byte) ';');
+        putInt(out, code2);
+        out.put((byte) 'm');
+    }
+
+    private static void putComponents(ByteBuffer out, int rgb) {
+        out.put(DIGIT_BYTES[(rgb >> 16) & 0xff]).put((byte) ';')
+           .put(DIGIT_BYTES[(rgb >> 8) & 0xff]).put((byte) ';')
+           .put(DIGIT_BYTES[rgb & 0xff]).put((byte) 'm');
+    }
+
+    private static void putComponents(ByteBuffer out, int rgb, byte[] end) {
+        out.put(DIGIT_BYTES[(rgb >> 16) & 0xff]).put((byte) ';')
+           .put(DIGIT_BYTES[(rgb >> 8) & 0xff]).put((byte) ';')
+           .put(DIGIT_BYTES[rgb & 0xff]).put(end);
+    }
+}
@@ -1,15 +1,52 @@
 package tech.guiyom.anscapes.renderer;
 
+import tech.guiyom.anscapes.Anscapes;
+import tech.guiyom.anscapes.ColorMetric;
 import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.SgrEncoder;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+/**
+ * Renders images as lines of half block characters, 2 pixel rows per line, or of smaller blocks (see {@link Blocks}).
+ * <p>
+ * Renderers are thread safe once configured, a single instance can be shared by any number of threads.
+ * Each rendering thread borrows its scratch space from a few idle workspaces held by the renderer,
+ * and its output buffer from a {@link BufferPool}, no lock is taken while rendering.
+ */
 public abstract class AbstractImageRenderer implements ImageRenderer {
 
+    /**
+     * Colors of the terminal when nothing is known about them, see {@link #encodeCell(RenderOutput, int, int, long)}.
+     */
+    static final long UNKNOWN_COLORS = -1L;
+
+    /**
+     * Longest sequence selecting 24 bit colors, both at once, see {@link #maxColorsLength()}.
+     */
+    private static final int MAX_RGB_LENGTH;
+    /**
+     * Longest glyph, a character outside of the Basic Multilingual Plane in UTF-8.
+     */
+    static final int MAX_GLYPH_LENGTH = 4;
+
+    static {
+        CharBuffer buf = CharBuffer.allocate(64);
+        SgrEncoder.fgBgRgb(buf, 0xffffff, 0xffffff);
+        MAX_RGB_LENGTH = buf.position();
+    }
+
     /**
      * Chars used to output image. They will then hold colors.
      */
@@ -18,30 +55,53 @@ public abstract class AbstractImageRenderer implements ImageRenderer {
             CHAR_BOTTOM = '\u2584',
             CHAR_BLANK = ' ';
 
+    /**
+     * Number of idle workspaces kept by a renderer, more concurrent threads allocate their own.
+     */
+    private static final int WORKSPACE_SLOTS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
     // Target size
     protected final int targetWidth;
     protected final int targetHeight;
-    protected final CharBuffer outputBuffer;
     // Color mode
     protected ColorMode colorMode;
-    protected int[] resizeBuffer;
+    // Pixels used as the lower row when the target height is odd, never written
+    private final int[] blankRow;
+
+    // Configuration, set before sharing the renderer
+    private volatile Scaling scaling = Scaling.NEAREST;
+    private volatile Blocks blocks = Blocks.HALF;
+    private volatile boolean eraseRuns;
+    private volatile BufferPool bufferPool = BufferPool.shared();
+    // Listener of the rendered frames, null when nobody listens
+    private volatile RenderMetrics metrics;
+    // Parallel rendering, null when rendering serially
+    private volatile ForkJoinPool pool;
+    // First target row of each band then the target height, replaced as a whole
+    private volatile int[] bandRows;
+
+    // Sampling tables of the last source size
+    private volatile Sampling sampling;
+    // Scratch space of the threads not rendering right now, null slots are free
+    private final AtomicReferenceArray<Workspace> workspaces = new AtomicReferenceArray<>(WORKSPACE_SLOTS);
 
     protected AbstractImageRenderer(ColorMode cmode, int targetWidth, int targetHeight) {
         this.colorMode = cmode;
         this.targetWidth = targetWidth;
         this.targetHeight = targetHeight;
-        this.resizeBuffer = new int[targetWidth * targetHeight];
-
-        // Scaling the buffer for the worst case to prevent further array copies.
-        this.outputBuffer = CharBuffer.allocate(39 * targetHeight * targetWidth + targetHeight * 5);
-        this.outputBuffer.mark();
+        this.blankRow = new int[targetWidth];
     }
 
+    /**
+     * @deprecated renderers read any {@link ByteBuffer} in place, see {@link #render(ByteBuffer, PixelFormat, int, int, BiConsumer)}.
+     * This one also un-premultiplies alpha.
+     */
+    @Deprecated
     protected static int[] bytesToARGB(ByteBuffer buf, int width, int height) {
         int[] data = new int[width * height];
         for (int x = 0; x < width; ++x)
             for (int y = 0; y < height; ++y) {
-                int index = y * width + x * 4;
+                int index = (y * width + x) * 4;
                 int b = buf.get(index) & 0xff;
                 int g = buf.get(index + 1) & 0xff;
                 int r = buf.get(index + 2) & 0xff;
@@ -58,18 +118,23 @@ public abstract class AbstractImageRenderer implements ImageRenderer {
     }
 
     static void resize(int[] pixels, int originalWidth, int originalHeight, int[] out, int targetWidth, int targetHeight) {
-        // EDIT: added +1 to account for an early rounding problem
-        int x_ratio = ((originalWidth << 16) / targetWidth) + 1;
-        int y_ratio = ((originalHeight << 16) / targetHeight) + 1;
-        //int x_ratio = (int)((w1<<16)/w2) ;
-        //int y_ratio = (int)((h1<<16)/h2) ;
-        int x2, y2;
+        resize(pixels, originalWidth, originalHeight, out, targetWidth, targetHeight, Scaling.NEAREST);
+    }
+
+    /**
+     * Same as {@link #resize(int[], int, int, int[], int, int)} with {@link Scaling#AREA_AVERAGE}.
+     */
+    static void resizeAverage(int[] pixels, int originalWidth, int originalHeight, int[] out, int targetWidth, int targetHeight) {
+        resize(pixels, originalWidth, originalHeight, out, targetWidth, targetHeight, Scaling.AREA_AVERAGE);
+    }
+
+    private static void resize(int[] pixels, int originalWidth, int originalHeight, int[] out, int targetWidth, int targetHeight, Scaling scaling) {
+        Sampling sampling = new Sampling(originalWidth, originalHeight, targetWidth, targetHeight, scaling);
+        FrameSource src = new FrameSource.IntArray().set(pixels, originalWidth, originalHeight);
+        RowSampler sampler = new RowSampler(targetWidth);
         for (int i = 0; i < targetHeight; i++) {
-            for (int j = 0; j < targetWidth; j++) {
-                x2 = ((j * x_ratio) >> 16);
-                y2 = ((i * y_ratio) >> 16);
-                out[(i * targetWidth) + j] = pixels[(y2 * originalWidth) + x2];
-            }
+            sampling.sample(src, i, sampler);
+            System.arraycopy(sampler.row, 0, out, i * targetWidth, targetWidth);
         }
     }
 
@@ -87,24 +152,822 @@ public abstract class AbstractImageRenderer implements ImageRenderer {
     }
 
     /**
-     * Resize pixels to the target dimensions
+     * @return how colors are compared when quantizing and applying the bias
+     */
+    public ColorMetric getColorMetric() {
+        return ColorMetric.EUCLIDEAN;
+    }
+
+    /**
+     * @return how colors between the palette colors are approximated
+     */
+    public Dithering getDithering() {
+        return Dithering.NONE;
+    }
+
+    /**
+     * Enable parallel rendering. Each frame is split in bands of lines that are sampled, quantized and encoded
+     * as separate tasks, then copied to the output in order.
+     * <p>
+     * This is only worth it for large targets, small frames are faster to render on a single thread.
+     *
+     * @param pool the pool to run tasks on, or null to render on the calling thread (default)
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        int rows = blocks.rows();
+        int lines = blocks.lines(targetHeight);
+        if (pool == null || lines < 2) {
+            this.bandRows = null;
+            this.pool = pool;
+            return;
+        }
+        // A few bands per worker to balance the load
+        int count = Math.min(lines, pool.getParallelism() * 4);
+        int linesPerBand = (lines + count - 1) / count;
+        count = (lines + linesPerBand - 1) / linesPerBand;
+        int[] bandRows = new int[count + 1];
+        for (int i = 0; i < count; ++i)
+            bandRows[i] = rows * i * linesPerBand;
+        bandRows[count] = targetHeight;
+        this.pool = pool;
+        this.bandRows = bandRows;
+    }
+
+    /**
+     * @return the pool used for parallel rendering, or null if rendering serially
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return pool;
+    }
+
+    /**
+     * Set how frames are resized to the target size.
+     *
+     * @param scaling the scaling, {@link Scaling#NEAREST} by default
+     */
+    public void setScaling(Scaling scaling) {
+        this.scaling = scaling;
+    }
+
+    public Scaling getScaling() {
+        return scaling;
+    }
+
+    /**
+     * Set the characters cells are drawn with. Smaller blocks show more pixels per cell for about as many color
+     * changes : for the same number of cells, double the target width for quadrants, and also multiply the target
+     * height by 1.5 for sextants.
+     *
+     * @param blocks the characters, {@link Blocks#HALF} by default
+     */
+    public void setBlocks(Blocks blocks) {
+        this.blocks = blocks;
+        // Bands are made of whole lines
+        setForkJoinPool(pool);
+    }
+
+    public Blocks getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Write long runs of cells of a single color by erasing them with the background color
+     * ({@link Anscapes#eraseChars(int)} then {@link Anscapes#moveRight(int)}) instead of writing every cell.
+     * Flat areas like letterboxes and backgrounds take a few bytes per run instead of one per cell.
+     * <p>
+     * The terminal must erase with the current background color (bce), most do but some multiplexers don't.
+     *
+     * @param eraseRuns true to erase runs, false by default
+     */
+    public void setEraseRuns(boolean eraseRuns) {
+        this.eraseRuns = eraseRuns;
+    }
+
+    public boolean isEraseRuns() {
+        return eraseRuns;
+    }
+
+    /**
+     * Set where output buffers come from. Buffers are only held while rendering a frame.
+     *
+     * @param bufferPool the pool, {@link BufferPool#shared()} by default
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Measure every frame rendered : time spent in each stage, output length, sequences written.
+     * Frames served by a {@link RenderCache} are not rendered, so not measured.
+     *
+     * @param metrics the listener, or null to stop measuring (default)
+     */
+    public void setRenderMetrics(RenderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public RenderMetrics getRenderMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Resize pixels to the target dimensions with the scaling of this renderer, see {@link #setScaling(Scaling)}.
+     * Rendering never needs it, rows are sampled as they are rendered.
      *
      * @param pixels         the pixel data
      * @param originalWidth  the original pixel array width
      * @param originalHeight the original pixel array height
+     * @param out            where to write the {@link #targetWidth} x {@link #targetHeight} resized pixels
+     */
+    protected void resize(int[] pixels, int originalWidth, int originalHeight, int[] out) {
+        if (out.length < targetWidth * targetHeight)
+            throw new IllegalArgumentException("The output should hold " + targetWidth * targetHeight + " pixels.");
+        resize(pixels, originalWidth, originalHeight, out, targetWidth, targetHeight, scaling);
+    }
+
+    /**
+     * Get ready to sample a frame. Sampling tables only depend on the source size, they are kept between frames.
+     *
+     * @return the sampling tables for this frame
+     */
+    Sampling prepare(FrameSource src) {
+        Sampling sampling = this.sampling;
+        Scaling scaling = this.scaling;
+        if (sampling == null || !sampling.matches(src, scaling)) {
+            // Threads racing here compute the same tables
+            sampling = new Sampling(src.width, src.height, targetWidth, targetHeight, scaling);
+            this.sampling = sampling;
+        }
+        return sampling;
+    }
+
+    /**
+     * Convert a row of pixels to colors of this renderer color space.
+     * Quantized colors must be positive so they can be compared with {@link #sameColor(int, int)}.
+     * Called concurrently when the renderer is shared, implementations must not write to any field.
+     *
+     * @param pixels the pixel data, in ARGB
+     * @param offset the index of the first pixel of the row
+     * @param y      the row number
+     * @param colors where to write the {@link #targetWidth} quantized colors
+     */
+    protected abstract void quantize(int[] pixels, int offset, int y, int[] colors);
+
+    /**
+     * Same as {@link #quantize(int[], int, int, int[])}, for renderers keeping state from row to row
+     * in the scratch space of the calling thread. Rows of a frame are quantized in order.
+     *
+     * @param scratch the scratch space of the calling thread
+     */
+    void quantize(int[] pixels, int offset, int y, int[] colors, RowSampler scratch) {
+        quantize(pixels, offset, y, colors);
+    }
+
+    /**
+     * Write the sequence selecting a quantized color as foreground.
+     *
+     * @param out   the output
+     * @param color the quantized color
+     */
+    protected abstract void encodeFg(RenderOutput out, int color);
+
+    /**
+     * Write the sequence selecting a quantized color as background.
+     *
+     * @param out   the output
+     * @param color the quantized color
+     */
+    protected abstract void encodeBg(RenderOutput out, int color);
+
+    /**
+     * Write the sequence selecting both quantized colors, when both change at once.
+     * The default writes both sequences, a single sequence with both parameters is shorter.
+     *
+     * @param out the output
+     * @param fg  the quantized foreground color
+     * @param bg  the quantized background color
+     */
+    protected void encodeColors(RenderOutput out, int fg, int bg) {
+        encodeFg(out, fg);
+        encodeBg(out, bg);
+    }
+
+    /**
+     * Write a half block cell with as few color changes as possible.
+     * A cell of a single color is a space or a full block, whichever shows a current color,
+     * and a cell of two colors is an upper or a lower half block, whichever keeps more of the current colors.
+     *
+     * @param out      the output
+     * @param upper    the quantized color of the upper pixel
+     * @param lower    the quantized color of the lower pixel
+     * @param terminal the current foreground color in the high 32 bits and background color in the low ones,
+     *                 -1 when unknown, see {@link #UNKNOWN_COLORS}
+     * @return the colors of the terminal after this cell, packed the same way
+     */
+    final long encodeCell(RenderOutput out, int upper, int lower, long terminal) {
+        return encodeCell(out, upper, lower, 1, Blocks.HALF, terminal);
+    }
+
+    /**
+     * Same as {@link #encodeCell(RenderOutput, int, int, long)} for any blocks : a cell of two colors is drawn
+     * by its pattern, or by the inverse pattern with the colors swapped, whichever keeps more of the current colors.
+     *
+     * @param out      the output
+     * @param colorA   the quantized color of the pixels of the pattern
+     * @param colorB   the quantized color of the other pixels
+     * @param pattern  the pixels of color A, see {@link Blocks#glyphs}
+     * @param blocks   the glyphs
+     * @param terminal the current colors
+     * @return the colors of the terminal after this cell
+     */
+    final long encodeCell(RenderOutput out, int colorA, int colorB, int pattern, Blocks blocks, long terminal) {
+        int fg = (int) (terminal >> 32);
+        int bg = (int) terminal;
+
+        if (sameColor(colorB, colorA)) {
+            // A space is a single byte, a full block is 3 in UTF-8
+            if (bg != -1 && sameColor(colorA, bg)) {
+                out.putGlyph(CHAR_BLANK);
+            } else if (fg != -1 && sameColor(colorA, fg)) {
+                out.putGlyph(CHAR_FULL);
+            } else {
+                encodeBg(out, colorA);
+                ++out.bgEscapes;
+                bg = colorA;
+                out.putGlyph(CHAR_BLANK);
+            }
+            return colors(fg, bg);
+        }
+
+        boolean keepFg = fg != -1 && sameColor(colorA, fg);
+        boolean keepBg = bg != -1 && sameColor(colorB, bg);
+        if (!keepFg || !keepBg) {
+            if (inverse(colorA, colorB, terminal)) {
+                pattern ^= blocks.full;
+                keepFg = fg != -1 && sameColor(colorB, fg);
+                keepBg = bg != -1 && sameColor(colorA, bg);
+                int swap = colorA;
+                colorA = colorB;
+                colorB = swap;
+            }
+            if (!keepFg && !keepBg) {
+                encodeColors(out, colorA, colorB);
+                ++out.fgEscapes;
+                ++out.bgEscapes;
+                fg = colorA;
+                bg = colorB;
+            } else if (!keepFg) {
+                encodeFg(out, colorA);
+                ++out.fgEscapes;
+                fg = colorA;
+            } else {
+                encodeBg(out, colorB);
+                ++out.bgEscapes;
+                bg = colorB;
+            }
+        }
+        out.putCodePoint(blocks.glyphs[pattern]);
+        return colors(fg, bg);
+    }
+
+    /**
+     * @param colorA   the quantized color of the pixels of the pattern
+     * @param colorB   the quantized color of the other pixels, not the same as color A
+     * @param terminal the current colors
+     * @return true if {@link #encodeCell(RenderOutput, int, int, int, Blocks, long)} draws the inverse pattern,
+     * showing color A with the background and color B with the foreground
+     */
+    final boolean inverse(int colorA, int colorB, long terminal) {
+        int fg = (int) (terminal >> 32);
+        int bg = (int) terminal;
+        int kept = (fg != -1 && sameColor(colorA, fg) ? 1 : 0) + (bg != -1 && sameColor(colorB, bg) ? 1 : 0);
+        // The inverse pattern shows the same colors the other way around
+        int swapped = (fg != -1 && sameColor(colorB, fg) ? 1 : 0) + (bg != -1 && sameColor(colorA, bg) ? 1 : 0);
+        return kept < 2 && swapped > kept;
+    }
+
+    private static long colors(int fg, int bg) {
+        return (long) fg << 32 | (bg & 0xffffffffL);
+    }
+
+    /**
+     * @param upperRow the quantized upper row, or the first colors of the cells
+     * @param lowerRow the quantized lower row, or the second colors of the cells
+     * @param x        the first cell of the run, of a single color
+     * @param cells    the number of cells of the line
+     * @return the end of the run of cells of the same single color, exclusive
+     */
+    final int runEnd(int[] upperRow, int[] lowerRow, int x, int cells) {
+        int color = upperRow[x];
+        int end = x + 1;
+        while (end < cells && sameColor(upperRow[end], color) && sameColor(lowerRow[end], color))
+            ++end;
+        return end;
+    }
+
+    /**
+     * @param n         the number of cells to erase
+     * @param moveRight if the cursor has to be moved after the erased cells
+     * @return the length of the sequences erasing the cells, a cell of a single color is a single char otherwise
+     */
+    static int eraseLength(int n, boolean moveRight) {
+        int digits = 1;
+        for (int i = n; i >= 10; i /= 10)
+            ++digits;
+        return moveRight ? 2 * (3 + digits) : 3 + digits;
+    }
+
+    /**
+     * Erase cells with a color, the cursor doesn't move.
+     *
+     * @param out      the output
+     * @param color    the quantized color
+     * @param n        the number of cells
+     * @param terminal the current colors, see {@link #encodeCell(RenderOutput, int, int, long)}
+     * @return the colors of the terminal after erasing
+     */
+    final long eraseCells(RenderOutput out, int color, int n, long terminal) {
+        int bg = (int) terminal;
+        if (bg == -1 || !sameColor(color, bg)) {
+            encodeBg(out, color);
+            ++out.bgEscapes;
+            terminal = colors((int) (terminal >> 32), color);
+        }
+        out.put(Anscapes.CSI);
+        out.putInt(n);
+        out.put("X");
+        return terminal;
+    }
+
+    /**
+     * Same as {@link Anscapes#moveRight(int)}.
+     */
+    static void moveRight(RenderOutput out, int n) {
+        out.put(Anscapes.CSI);
+        out.putInt(n);
+        out.put("C");
+    }
+
+    /**
+     * @param c1 a quantized color
+     * @param c2 the previously emitted quantized color
+     * @return true if c1 can be displayed using c2
+     */
+    protected boolean sameColor(int c1, int c2) {
+        return c1 == c2;
+    }
+
+    /**
+     * @return the setting changing the output besides the color mode, size and scaling (bias or threshold),
+     * part of the {@link RenderCache} keys
+     */
+    int parameter() {
+        return 0;
+    }
+
+    /**
+     * @return the distance under which colors are considered the same, part of the {@link RenderCache} keys
+     */
+    int bias() {
+        return 0;
+    }
+
+    /**
+     * Change the bias between frames, see {@link BitrateController}.
+     *
+     * @param bias the new bias
+     * @return false if this renderer has no bias
+     */
+    boolean adjustBias(int bias) {
+        return false;
+    }
+
+    /**
+     * Borrow scratch space for the calling thread, it must be given back with {@link #release(Workspace)}.
+     */
+    private Workspace acquire() {
+        for (int i = 0; i < WORKSPACE_SLOTS; ++i) {
+            Workspace ws = workspaces.get(i);
+            if (ws != null && workspaces.compareAndSet(i, ws, null))
+                return ws;
+        }
+        return new Workspace();
+    }
+
+    private void release(Workspace ws) {
+        for (int i = 0; i < WORKSPACE_SLOTS; ++i)
+            if (workspaces.get(i) == null && workspaces.compareAndSet(i, null, ws))
+                return;
+        // Dropped, all the slots are taken
+    }
+
+    /**
+     * Render a frame.
+     *
+     * @param src the frame
+     * @param ws  the scratch space of the calling thread
+     * @param out where to write the frame, it is cleared first
+     */
+    void render(FrameSource src, Workspace ws, RenderOutput out) {
+
+        out.clear();
+        Sampling sampling = prepare(src);
+
+        Blocks blocks = this.blocks;
+        ForkJoinPool pool = this.pool;
+        int[] bandRows = this.bandRows;
+        if (pool != null && bandRows != null) {
+            renderParallel(src, sampling, blocks, ws.bands(bandRows), pool, ws.sampler.metrics, out);
+            return;
+        }
+
+        renderLines(src, sampling, blocks, 0, targetHeight, ws.sampler, ws.blockLine(blocks), ws.upperRow, ws.lowerRow, out);
+    }
+
+    private void renderParallel(FrameSource src, Sampling sampling, Blocks blocks, Band[] bands, ForkJoinPool pool,
+                                RenderMetrics.Frame frame, RenderOutput out) {
+        BufferPool bufferPool = this.bufferPool;
+        for (Band band : bands)
+            band.prepare(src, sampling, blocks, bufferPool, frame != null, out);
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(bands);
+                }
+            });
+            for (Band band : bands) {
+                out.reserve(band.output.length());
+                out.append(band.output);
+                if (frame != null)
+                    frame.add(band.sampler.metrics);
+            }
+        } finally {
+            for (Band band : bands)
+                band.release();
+        }
+    }
+
+    /**
+     * Render a frame to a buffer of the pool, sized from the previous frames. Each line reserves its worst-case length
+     * before being written, growing the output to a larger buffer of the pool when needed, so a frame is rendered once.
+     * The output must be released once consumed.
+     *
+     * @param src the frame
+     * @param ws  the scratch space of the calling thread
+     * @param out the output, without any buffer
+     */
+    private void renderPooled(FrameSource src, Workspace ws, RenderOutput out) {
+        BufferPool bufferPool = this.bufferPool;
+        RenderMetrics metrics = this.metrics;
+        RenderMetrics.Frame frame = metrics == null ? null : ws.frame();
+        ws.sampler.metrics = frame;
+        long start = frame == null ? 0 : System.nanoTime();
+        int capacity = ws.lengthHint > 0 ? ws.lengthHint + (ws.lengthHint >> 2) : estimateLength(targetHeight, this.blocks);
+        out.acquire(bufferPool, capacity);
+        try {
+            if (frame != null)
+                frame.clear();
+            render(src, ws, out);
+            ws.lengthHint = nextLengthHint(ws.lengthHint, out.length());
+            if (frame != null) {
+                frame.totalNanos = System.nanoTime() - start;
+                frame.length = out.length();
+                frame.fgEscapes = out.fgEscapes;
+                frame.bgEscapes = out.bgEscapes;
+                metrics.frameRendered(frame);
+            }
+        } catch (RuntimeException | Error e) {
+            out.release(bufferPool);
+            throw e;
+        }
+    }
+
+    /**
+     * The longest sequence written by {@link #encodeColors(RenderOutput, int, int)}, {@link #encodeFg(RenderOutput, int)}
+     * or {@link #encodeBg(RenderOutput, int)}, room for each line is reserved from it.
+     * Renderers writing longer sequences than 24 bit colors must override it.
+     *
+     * @return the length of the sequence, in chars, all ASCII
+     */
+    protected int maxColorsLength() {
+        return MAX_RGB_LENGTH;
+    }
+
+    /**
+     * @param cells the number of cells of a line
+     * @return the longest a line can be, when every cell changes both colors.
+     * A run of erased cells is shorter than the cells it replaces.
+     */
+    final int maxLineLength(int cells) {
+        return cells * (maxColorsLength() + MAX_GLYPH_LENGTH) + Anscapes.RESET.length() + System.lineSeparator().length();
+    }
+
+    /**
+     * @param rows   a number of pixel rows
+     * @param blocks the cell layout
+     * @return a guess of the output length of these rows, about half the worst case.
+     * Outputs grow when the guess is too short, see {@link RenderOutput#reserve(int)}.
+     */
+    private int estimateLength(int rows, Blocks blocks) {
+        return blocks.lines(rows) * (blocks.cells(targetWidth) * (maxColorsLength() / 2 + MAX_GLYPH_LENGTH) + 16);
+    }
+
+    /**
+     * Delta frames can be a lot shorter than the next one, a frame that doesn't fit costs a copy to a larger buffer.
+     */
+    private static int nextLengthHint(int hint, int length) {
+        return Math.max(length, hint - (hint >> 4));
+    }
+
+    /**
+     * Sample and quantize the two pixel rows making a line of characters.
+     * The frame is never resized as a whole, each row is sampled right before being quantized.
+     *
+     * @param src      the frame
+     * @param sampling the sampling tables, see {@link #prepare(FrameSource)}
+     * @param y        the upper target row
+     * @param sampler  scratch space for the sampled pixels
+     * @param upperRow where to write the quantized upper row
+     * @param lowerRow where to write the quantized lower row, black if there is no lower pixel row
+     */
+    void quantizeLine(FrameSource src, Sampling sampling, int y, RowSampler sampler, int[] upperRow, int[] lowerRow) {
+        quantizeRow(src, sampling, y, sampler, upperRow);
+        quantizeRow(src, sampling, y + 1, sampler, lowerRow);
+    }
+
+    /**
+     * Sample the pixel rows making a line of cells, split each cell in 2 colors and quantize them.
+     * Colors are quantized as the 2 rows of a line of half blocks, for dithering.
+     *
+     * @param src      the frame
+     * @param sampling the sampling tables, see {@link #prepare(FrameSource)}
+     * @param blocks   the cell layout, anything but {@link Blocks#HALF}
+     * @param y        the upper target row
+     * @param sampler  scratch space for the sampled pixels
+     * @param line     scratch space for the split, its patterns are the patterns of the cells
+     * @param colorsA  where to write the quantized color of the pattern of each cell
+     * @param colorsB  where to write the quantized color of the other pixels
+     */
+    void quantizeBlocks(FrameSource src, Sampling sampling, Blocks blocks, int y, RowSampler sampler, BlockLine line, int[] colorsA, int[] colorsB) {
+        for (int i = 0; i < blocks.rows(); ++i)
+            sampleRow(src, sampling, y + i, sampler, line.rows[i]);
+        RenderMetrics.Frame metrics = sampler.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        line.split(blocks, targetWidth);
+        int row = 2 * (y / blocks.rows());
+        quantize(line.colorsA, 0, row, colorsA, sampler);
+        quantize(line.colorsB, 0, row + 1, colorsB, sampler);
+        if (metrics != null)
+            metrics.quantizeNanos += System.nanoTime() - start;
+    }
+
+    private void sampleRow(FrameSource src, Sampling sampling, int y, RowSampler sampler, int[] pixels) {
+        if (y >= targetHeight) {
+            System.arraycopy(blankRow, 0, pixels, 0, targetWidth);
+            return;
+        }
+        int[] array = src.array();
+        if (array != null && src.width == targetWidth && src.height == targetHeight) {
+            System.arraycopy(array, y * targetWidth, pixels, 0, targetWidth);
+            return;
+        }
+        RenderMetrics.Frame metrics = sampler.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        sampling.sample(src, y, sampler);
+        System.arraycopy(sampler.row, 0, pixels, 0, targetWidth);
+        if (metrics != null) {
+            metrics.resizeNanos += System.nanoTime() - start;
+            metrics.pixelsResized += targetWidth;
+        }
+    }
+
+    private void quantizeRow(FrameSource src, Sampling sampling, int y, RowSampler sampler, int[] colors) {
+        RenderMetrics.Frame metrics = sampler.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        int[] pixels;
+        int offset = 0;
+        int[] array = src.array();
+        if (y >= targetHeight) {
+            pixels = blankRow;
+        } else if (array != null && src.width == targetWidth && src.height == targetHeight) {
+            // Already at the target size, read in place
+            pixels = array;
+            offset = y * targetWidth;
+        } else {
+            sampling.sample(src, y, sampler);
+            pixels = sampler.row;
+            if (metrics != null) {
+                long end = System.nanoTime();
+                metrics.resizeNanos += end - start;
+                metrics.pixelsResized += targetWidth;
+                start = end;
+            }
+        }
+        quantize(pixels, offset, y, colors, sampler);
+        if (metrics != null)
+            metrics.quantizeNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Encode lines of characters.
+     *
+     * @param src       the frame
+     * @param sampling  the sampling tables, see {@link #prepare(FrameSource)}
+     * @param blocks    the cell layout
+     * @param fromY     the first target row, must be the first row of a line
+     * @param toY       the last target row, exclusive
+     * @param sampler   scratch space for the sampled pixels
+     * @param blockLine scratch space to split cells, null for half blocks
+     * @param upperRow  scratch space for the quantized upper row, or the first colors of the cells
+     * @param lowerRow  scratch space for the quantized lower row, or the second colors of the cells
+     * @param out       where to write the lines
+     */
+    private void renderLines(FrameSource src, Sampling sampling, Blocks blocks, int fromY, int toY, RowSampler sampler,
+                             BlockLine blockLine, int[] upperRow, int[] lowerRow, RenderOutput out) {
+
+        boolean eraseRuns = this.eraseRuns;
+        int cells = blocks.cells(targetWidth);
+        int lineLength = maxLineLength(cells);
+        RenderMetrics.Frame metrics = sampler.metrics;
+        // TODO control background color when dealing with transparent images
+        for (int y = fromY; y < toY; y += blocks.rows()) {
+
+            // Half blocks always show the upper pixel as foreground
+            int[] patterns = null;
+            if (blockLine == null) {
+                quantizeLine(src, sampling, y, sampler, upperRow, lowerRow);
+            } else {
+                quantizeBlocks(src, sampling, blocks, y, sampler, blockLine, upperRow, lowerRow);
+                patterns = blockLine.patterns;
+            }
+            long start = metrics == null ? 0 : System.nanoTime();
+            out.reserve(lineLength);
+
+            // Colors are reset at the end of each line
+            long terminal = UNKNOWN_COLORS;
+            int x = 0;
+            while (x < cells) {
+                if (eraseRuns && sameColor(lowerRow[x], upperRow[x])) {
+                    int end = runEnd(upperRow, lowerRow, x, cells);
+                    // The line ends right after, no need to move the cursor past the erased cells
+                    boolean last = end == cells;
+                    if (end - x > eraseLength(end - x, !last)) {
+                        terminal = eraseCells(out, upperRow[x], end - x, terminal);
+                        if (!last)
+                            moveRight(out, end - x);
+                        x = end;
+                    } else {
+                        for (; x < end; ++x)
+                            terminal = encodeCell(out, upperRow[x], lowerRow[x], patterns == null ? 1 : patterns[x], blocks, terminal);
+                    }
+                } else {
+                    terminal = encodeCell(out, upperRow[x], lowerRow[x], patterns == null ? 1 : patterns[x], blocks, terminal);
+                    ++x;
+                }
+            }
+
+            out.put(Anscapes.RESET);
+            out.put(System.lineSeparator());
+            if (metrics != null)
+                metrics.encodeNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void renderChars(FrameSource src, Workspace ws, BiConsumer<char[], Integer> resultConsumer) {
+        RenderOutput out = ws.charOutput;
+        renderPooled(src, ws, out);
+        try {
+            CharBuffer buf = ((RenderOutput.Chars) out).buf;
+            resultConsumer.accept(buf.array(), buf.position());
+        } finally {
+            out.release(bufferPool);
+        }
+    }
+
+    /**
+     * Render a frame to a byte buffer of the pool, it must be given back with {@link #releaseBytes(Workspace)}.
+     *
+     * @return the byte buffer, ready to be read
      */
-    protected void resize(int[] pixels, int originalWidth, int originalHeight) {
-        resize(pixels, originalWidth, originalHeight, resizeBuffer, targetWidth, targetHeight);
+    private ByteBuffer renderBytes(FrameSource src, Workspace ws) {
+        renderPooled(src, ws, ws.byteOutput);
+        ByteBuffer buf = ((RenderOutput.Bytes) ws.byteOutput).buf;
+        buf.flip();
+        return buf;
+    }
+
+    private void releaseBytes(Workspace ws) {
+        ws.byteOutput.release(bufferPool);
+    }
+
+    private void renderBytes(FrameSource src, Workspace ws, Consumer<ByteBuffer> resultConsumer) {
+        ByteBuffer buf = renderBytes(src, ws);
+        try {
+            resultConsumer.accept(buf);
+        } finally {
+            releaseBytes(ws);
+        }
+    }
+
+    @Override
+    public void render(int[] data, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
+        Workspace ws = acquire();
+        try {
+            renderChars(ws.arraySource.set(data, originalWidth, originalHeight), ws, resultConsumer);
+        } finally {
+            release(ws);
+        }
+    }
+
+    @Override
+    public void renderBytes(int[] data, int originalWidth, int originalHeight, Consumer<ByteBuffer> resultConsumer) {
+        Workspace ws = acquire();
+        try {
+            renderBytes(ws.arraySource.set(data, originalWidth, originalHeight), ws, resultConsumer);
+        } finally {
+            release(ws);
+        }
+    }
+
+    @Override
+    public void render(int[] data, int originalWidth, int originalHeight, WritableByteChannel channel) throws IOException {
+        Workspace ws = acquire();
+        try {
+            ByteBuffer buf = renderBytes(ws.arraySource.set(data, originalWidth, originalHeight), ws);
+            try {
+                while (buf.hasRemaining())
+                    channel.write(buf);
+            } finally {
+                releaseBytes(ws);
+            }
+        } finally {
+            release(ws);
+        }
+    }
+
+    @Override
+    public void render(int[] data, int originalWidth, int originalHeight, OutputStream stream) throws IOException {
+        Workspace ws = acquire();
+        try {
+            ByteBuffer buf = renderBytes(ws.arraySource.set(data, originalWidth, originalHeight), ws);
+            try {
+                stream.write(buf.array(), 0, buf.limit());
+            } finally {
+                releaseBytes(ws);
+            }
+        } finally {
+            release(ws);
+        }
+    }
+
+    @Override
+    public void render(ByteBuffer buf, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
+        render(buf, PixelFormat.ARGB, originalWidth, originalHeight, resultConsumer);
+    }
+
+    @Override
+    public void render(ByteBuffer buf, PixelFormat format, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
+        Workspace ws = acquire();
+        try {
+            renderChars(ws.byteSource.set(buf, format, originalWidth, originalHeight), ws, resultConsumer);
+        } finally {
+            release(ws);
+        }
     }
 
     @Override
-    public void render(ByteBuffer buf, int originalWidth, int originalHeight, BiConsumer<char[], Integer> renderConsumer) {
-        render(buf.asIntBuffer(), originalWidth, originalHeight, renderConsumer);
+    public void renderBytes(ByteBuffer buf, PixelFormat format, int originalWidth, int originalHeight, Consumer<ByteBuffer> resultConsumer) {
+        Workspace ws = acquire();
+        try {
+            renderBytes(ws.byteSource.set(buf, format, originalWidth, originalHeight), ws, resultConsumer);
+        } finally {
+            release(ws);
+        }
     }
 
     @Override
     public void render(IntBuffer buf, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
-        render(buf.array(), originalWidth, originalHeight, resultConsumer);
+        Workspace ws = acquire();
+        try {
+            renderChars(ws.intSource.set(buf, originalWidth, originalHeight), ws, resultConsumer);
+        } finally {
+            release(ws);
+        }
+    }
+
+    @Override
+    public void renderBytes(IntBuffer buf, int originalWidth, int originalHeight, Consumer<ByteBuffer> resultConsumer) {
+        Workspace ws = acquire();
+        try {
+            renderBytes(ws.intSource.set(buf, originalWidth, originalHeight), ws, resultConsumer);
+        } finally {
+            release(ws);
+        }
     }
 
     /**
@@ -157,4 +1020,121 @@ public abstract class AbstractImageRenderer implements ImageRenderer {
         render(data, originalWidth, originalHeight, (buf, len) -> result[0] = new String(buf, 0, len));
         return result[0];
     }
+
+    /**
+     * Scratch space of a rendering thread, only used by one thread at a time.
+     */
+    final class Workspace {
+
+        final RowSampler sampler = new RowSampler(targetWidth);
+        // Quantized colors of the two pixel rows making a line of characters
+        final int[] upperRow = new int[targetWidth];
+        final int[] lowerRow = new int[targetWidth];
+        // Outputs only hold a buffer of the pool while rendering a frame
+        final RenderOutput charOutput = new RenderOutput.Chars(null);
+        final RenderOutput byteOutput = new RenderOutput.Bytes(null);
+        // Slowly decaying maximum of the frame lengths, to size the output of the next frame
+        int lengthHint;
+        // Reused frame sources
+        final FrameSource.IntArray arraySource = new FrameSource.IntArray();
+        final FrameSource.Ints intSource = new FrameSource.Ints();
+        final FrameSource.Bytes byteSource = new FrameSource.Bytes();
+        // Bands for the layout in bandRows
+        private Band[] bands;
+        private int[] bandRows;
+        // Only allocated when rendering other blocks than half blocks
+        private BlockLine blockLine;
+        // Only allocated when measuring frames
+        private RenderMetrics.Frame frame;
+
+        RenderMetrics.Frame frame() {
+            if (frame == null)
+                frame = new RenderMetrics.Frame();
+            return frame;
+        }
+
+        /**
+         * @return the scratch space to split cells, null for half blocks
+         */
+        BlockLine blockLine(Blocks blocks) {
+            if (blocks == Blocks.HALF)
+                return null;
+            if (blockLine == null)
+                blockLine = new BlockLine(targetWidth);
+            return blockLine;
+        }
+
+        Band[] bands(int[] bandRows) {
+            if (bandRows != this.bandRows) {
+                bands = new Band[bandRows.length - 1];
+                for (int i = 0; i < bands.length; ++i)
+                    bands[i] = new Band(bandRows[i], bandRows[i + 1]);
+                this.bandRows = bandRows;
+            }
+            return bands;
+        }
+    }
+
+    /**
+     * A group of lines rendered as a single task, with its own scratch space and output.
+     * The output buffer is only held while rendering a frame.
+     */
+    private final class Band extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int fromY;
+        private final int toY;
+        private final RowSampler sampler;
+        private final int[] upperRow;
+        private final int[] lowerRow;
+        private BlockLine blockLine;
+        private RenderOutput output;
+        private int lengthHint;
+
+        // Current frame
+        private FrameSource src;
+        private Sampling sampling;
+        private Blocks blocks;
+        private BufferPool bufferPool;
+
+        Band(int fromY, int toY) {
+            this.fromY = fromY;
+            this.toY = toY;
+            this.sampler = new RowSampler(targetWidth);
+            this.upperRow = new int[targetWidth];
+            this.lowerRow = new int[targetWidth];
+        }
+
+        void prepare(FrameSource src, Sampling sampling, Blocks blocks, BufferPool bufferPool, boolean measured, RenderOutput frameOutput) {
+            reinitialize();
+            this.src = src;
+            this.sampling = sampling;
+            this.blocks = blocks;
+            this.bufferPool = bufferPool;
+            if (blocks != Blocks.HALF && blockLine == null)
+                blockLine = new BlockLine(targetWidth);
+            if (!measured)
+                sampler.metrics = null;
+            else if (sampler.metrics == null)
+                sampler.metrics = new RenderMetrics.Frame();
+            else
+                sampler.metrics.clear();
+            if (output == null || output.getClass() != frameOutput.getClass())
+                output = frameOutput.create();
+            output.acquire(bufferPool, lengthHint > 0 ? lengthHint + (lengthHint >> 2) : estimateLength(toY - fromY, blocks));
+        }
+
+        void release() {
+            output.release(bufferPool);
+        }
+
+        @Override
+        protected void compute() {
+            renderLines(src, sampling, blocks, fromY, toY, sampler, blocks == Blocks.HALF ? null : blockLine, upperRow, lowerRow, output);
+            lengthHint = nextLengthHint(lengthHint, output.length());
+            // Don't retain the frame
+            src = null;
+        }
+    }
 }
@@ -1,20 +1,44 @@
 package tech.guiyom.anscapes.renderer;
 
 import tech.guiyom.anscapes.Anscapes;
-import tech.guiyom.anscapes.AnsiColor;
+import tech.guiyom.anscapes.ColorMetric;
 import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.ColorQuantizer;
+import tech.guiyom.anscapes.SgrEncoder;
 
-import java.awt.Color;
-import java.util.function.BiConsumer;
+import java.nio.CharBuffer;
 
 /**
  * Allow conversion of image to an ansi escape sequence of 16 basic colors.
  * <p>
- * You should use one instance per image / image sequence.
+ * Instances can be shared between threads, see {@link AbstractImageRenderer}.
  */
 public class AnsiImageRenderer extends AbstractImageRenderer {
 
-    private final int threshold;
+    private static final Anscapes.Colors[] COLORS = Anscapes.Colors.values();
+    // Ordered dithering offsets, the 16 colors are far apart
+    private static final int[] DITHER_OFFSETS = Dither.offsets(192);
+    private static final int MAX_COLORS_LENGTH;
+
+    static {
+        int max = 0;
+        for (Anscapes.Colors color : COLORS) {
+            CharBuffer buf = CharBuffer.allocate(64);
+            SgrEncoder.sgr(buf, color.code(), color.code() + 10);
+            max = Math.max(max, Math.max(buf.position(), Math.max(color.fg().length(), color.bg().length())));
+        }
+        MAX_COLORS_LENGTH = max;
+    }
+
+    private final ColorMetric metric;
+    // Squared distance between each pair of colors, indexed by (c1 << 4) | c2
+    private final int[] distances;
+    // Can change between frames, see BitrateController
+    private volatile int threshold;
+    private volatile ColorQuantizer quantizer;
+    private volatile int bias;
+    private volatile int biasSq;
+    private volatile Dithering dithering = Dithering.NONE;
 
     /**
      * @param targetWidth  the target width for image rescaling
@@ -27,52 +51,141 @@ public class AnsiImageRenderer extends AbstractImageRenderer {
     /**
      * @param targetWidth  the target width for image rescaling
      * @param targetHeight the target height for image rescaling
+     * @param threshold    distance to evaluate a spot-on, see {@link ColorQuantizer#ColorQuantizer(int[], int)}
      */
     public AnsiImageRenderer(int targetWidth, int targetHeight, int threshold) {
+        this(targetWidth, targetHeight, threshold, ColorMetric.EUCLIDEAN);
+    }
+
+    /**
+     * @param targetWidth  the target width for image rescaling
+     * @param targetHeight the target height for image rescaling
+     * @param threshold    distance to evaluate a spot-on, in the units of the metric
+     * @param metric       how colors are compared, see {@link ColorQuantizer#ColorQuantizer(int[], int, ColorMetric)}
+     */
+    public AnsiImageRenderer(int targetWidth, int targetHeight, int threshold, ColorMetric metric) {
         super(ColorMode.ANSI, targetWidth, targetHeight);
         this.threshold = threshold;
+        this.metric = metric;
+        this.quantizer = ColorQuantizer.ansi(threshold, metric);
+        this.distances = new int[COLORS.length * COLORS.length];
+        for (int c1 = 0; c1 < COLORS.length; ++c1)
+            for (int c2 = 0; c2 < COLORS.length; ++c2)
+                distances[(c1 << 4) | c2] = metric.distanceSq(COLORS[c1].rgb(), COLORS[c2].rgb());
+    }
+
+    /**
+     * Change the threshold, frames being rendered may use the previous one.
+     *
+     * @param threshold distance to evaluate a spot-on, in the units of the metric
+     */
+    public void setThreshold(int threshold) {
+        this.quantizer = ColorQuantizer.ansi(threshold, metric);
+        this.threshold = threshold;
+    }
+
+    public int getThreshold() {
+        return threshold;
     }
 
     @Override
-    public void render(int[] data, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
+    int parameter() {
+        return threshold;
+    }
 
-        // Resize if needed
-        if (originalWidth != targetWidth || originalHeight != targetHeight) {
-            resize(data, originalWidth, originalHeight);
-            data = resizeBuffer;
-        }
+    /**
+     * Reuse the current color instead of emitting a new one when they are close enough.
+     * The threshold barely changes the output size, the bias does.
+     *
+     * @param bias distance under which a color is not emitted again, in the units of the metric, 0 by default
+     */
+    public void setBias(int bias) {
+        this.biasSq = metric.squared(bias);
+        this.bias = bias;
+    }
+
+    public int getBias() {
+        return bias;
+    }
 
-        this.outputBuffer.reset();
-        AnsiColor prevUpper = null;
-        AnsiColor prevLower = null;
+    @Override
+    int bias() {
+        return bias;
+    }
 
-        for (int i = 0; i < targetHeight / 2; ++i) {
+    @Override
+    boolean adjustBias(int bias) {
+        setBias(bias);
+        return true;
+    }
 
-            int y = i * 2;
-            for (int x = 0; x < targetWidth; ++x) {
-                AnsiColor upper = Anscapes.findNearestColor(new Color(data[y * targetHeight + x], true), threshold);
-                AnsiColor lower = null;
-                if (y + 1 < targetHeight) {
-                    lower = Anscapes.findNearestColor(new Color(data[y * targetHeight + targetHeight + x], true), threshold);
-                } else {
-                    lower = Anscapes.Colors.BLACK;
-                }
+    @Override
+    public ColorMetric getColorMetric() {
+        return metric;
+    }
 
-                if (!upper.equals(prevUpper))
-                    outputBuffer.put(upper.fg());
-                if (!lower.equals(prevLower))
-                    outputBuffer.put(lower.bg());
+    /**
+     * Set how colors between the 16 colors are approximated.
+     *
+     * @param dithering the dithering, {@link Dithering#NONE} by default
+     */
+    public void setDithering(Dithering dithering) {
+        this.dithering = dithering;
+    }
 
-                outputBuffer.put(CHAR_TOP);
+    @Override
+    public Dithering getDithering() {
+        return dithering;
+    }
 
-                prevUpper = upper;
-                prevLower = lower;
-            }
+    @Override
+    protected void quantize(int[] pixels, int offset, int y, int[] colors) {
+        ColorQuantizer quantizer = this.quantizer;
+        for (int x = 0; x < targetWidth; ++x)
+            colors[x] = quantizer.nearest(pixels[offset + x]);
+    }
 
-            outputBuffer.put(Anscapes.RESET);
-            outputBuffer.put(System.lineSeparator());
+    @Override
+    void quantize(int[] pixels, int offset, int y, int[] colors, RowSampler scratch) {
+        switch (dithering) {
+            case ORDERED:
+                Dither.ordered(pixels, offset, y, targetWidth, DITHER_OFFSETS, quantizer, 0, colors);
+                break;
+            case FLOYD_STEINBERG:
+                if (scratch.diffusion == null)
+                    scratch.diffusion = new ErrorDiffusion(targetWidth);
+                scratch.diffusion.quantize(pixels, offset, y, targetWidth, quantizer, 0, colors);
+                break;
+            default:
+                quantize(pixels, offset, y, colors);
         }
+    }
+
+    // Sequences are cached by the enum, nothing is allocated here
 
-        resultConsumer.accept(outputBuffer.array(), outputBuffer.position());
+    @Override
+    protected void encodeFg(RenderOutput out, int color) {
+        out.put(COLORS[color].fg());
+    }
+
+    @Override
+    protected void encodeBg(RenderOutput out, int color) {
+        out.put(COLORS[color].bg());
+    }
+
+    @Override
+    protected void encodeColors(RenderOutput out, int fg, int bg) {
+        // Background codes are the foreground ones + 10
+        out.sgr(COLORS[fg].code(), COLORS[bg].code() + 10);
+    }
+
+    @Override
+    protected int maxColorsLength() {
+        return MAX_COLORS_LENGTH;
+    }
+
+    @Override
+    protected boolean sameColor(int c1, int c2) {
+        return c1 == c2 || distances[(c1 << 4) | c2] <= biasSq;
     }
 }
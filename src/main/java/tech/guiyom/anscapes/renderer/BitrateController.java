@@ -0,0 +1,117 @@
+package tech.guiyom.anscapes.renderer;
+
+/**
+ * Adjusts the bias of a {@link RgbImageRenderer} or an {@link AnsiImageRenderer} from frame to frame
+ * so that rendered frames stay around a budget of bytes.
+ * <p>
+ * Frame lengths are smoothed with an exponential moving average, and the bias only moves when the average
+ * is off the budget by more than a few percents, by a step proportional to the error and to the current bias.
+ * A higher bias means fewer color changes, so smaller frames of a lower quality.
+ * <p>
+ * Not thread safe, {@link #frameRendered(int)} is meant to be called by the thread rendering the frames.
+ */
+public final class BitrateController {
+
+    /**
+     * Weight of the last frame in the average length.
+     */
+    private static final double SMOOTHING = 0.25;
+    /**
+     * Relative error of the average length under which the bias doesn't move.
+     */
+    private static final double TOLERANCE = 0.05;
+    /**
+     * Part of the relative error applied to the bias each frame.
+     */
+    private static final double GAIN = 0.5;
+
+    private final AbstractImageRenderer renderer;
+    private final double budget;
+    private final int maxBias;
+    // Average frame length, negative before the first frame
+    private double average = -1;
+    // The bias, rounded when applied
+    private double level;
+
+    /**
+     * Adjust a renderer up to a bias of 255, ANSI colors are at least 147 apart in euclidean units.
+     *
+     * @param renderer      the renderer, a delta renderer adjusts the renderer it wraps
+     * @param bytesPerFrame the budget of each frame
+     */
+    public BitrateController(AbstractImageRenderer renderer, int bytesPerFrame) {
+        this(renderer, bytesPerFrame, 255);
+    }
+
+    /**
+     * @param renderer      the renderer, a delta renderer adjusts the renderer it wraps
+     * @param bytesPerFrame the budget of each frame
+     * @param maxBias       the highest bias used, in the units of the renderer color metric
+     */
+    public BitrateController(AbstractImageRenderer renderer, int bytesPerFrame, int maxBias) {
+        if (bytesPerFrame <= 0)
+            throw new IllegalArgumentException("The budget should be positive.");
+        if (maxBias < 0)
+            throw new IllegalArgumentException("The maximum bias should be positive.");
+        if (!renderer.adjustBias(renderer.bias()))
+            throw new IllegalArgumentException("The renderer has no bias to adjust.");
+        this.renderer = renderer;
+        this.budget = bytesPerFrame;
+        this.maxBias = maxBias;
+        this.level = Math.min(renderer.bias(), maxBias);
+    }
+
+    /**
+     * @param renderer       the renderer, a delta renderer adjusts the renderer it wraps
+     * @param bytesPerSecond the budget
+     * @param fps            the frame rate
+     * @return a controller holding the budget of each frame at this frame rate
+     */
+    public static BitrateController bytesPerSecond(AbstractImageRenderer renderer, long bytesPerSecond, double fps) {
+        if (fps <= 0)
+            throw new IllegalArgumentException("Frame rate should be positive.");
+        return new BitrateController(renderer, (int) Math.min(Integer.MAX_VALUE, bytesPerSecond / fps));
+    }
+
+    /**
+     * Adjust the renderer for the next frames.
+     *
+     * @param length the length of the frame just rendered
+     */
+    public void frameRendered(int length) {
+        average = average < 0 ? length : average + SMOOTHING * (length - average);
+        double error = (average - budget) / budget;
+        if (Math.abs(error) <= TOLERANCE)
+            return;
+        // Limit the steps, the average lags behind the setting
+        error = Math.max(-0.5, Math.min(1, error));
+        level = Math.max(0, Math.min(maxBias, level + GAIN * error * (level + 1)));
+        int bias = (int) Math.round(level);
+        if (bias != renderer.bias())
+            renderer.adjustBias(bias);
+    }
+
+    /**
+     * @return the current bias
+     */
+    public int getBias() {
+        return renderer.bias();
+    }
+
+    /**
+     * @return the average length of the last frames, in bytes
+     */
+    public double getAverageLength() {
+        return Math.max(0, average);
+    }
+
+    public int getBudget() {
+        return (int) budget;
+    }
+
+    @Override
+    public String toString() {
+        return "BitrateController{budget=" + (int) budget + ", average=" + (int) getAverageLength()
+                + ", bias=" + getBias() + '}';
+    }
+}
@@ -0,0 +1,125 @@
+package tech.guiyom.anscapes.renderer;
+
+/**
+ * Scratch space splitting the pixels of each cell of a line in 2 colors, for {@link Blocks} other than half blocks.
+ * One instance per rendering thread.
+ * <p>
+ * Each pattern of a cell is scored by the squared error of its 2 groups of pixels against their average colors.
+ * Minimizing it amounts to maximizing {@code |sumA|² / countA + |sumB|² / countB}, group sums are built pattern after
+ * pattern by adding a single pixel to a smaller pattern, so a cell of 6 pixels costs 32 additions per component.
+ */
+final class BlockLine {
+
+    /**
+     * Multiple of every pixel count, to compare scores without dividing.
+     */
+    private static final int LCM = 60;
+
+    /**
+     * The sampled pixel rows of the line, in ARGB.
+     */
+    final int[][] rows;
+    /**
+     * Average color of the pixels of the pattern (the foreground) and of the others, for each cell.
+     * Pixels past the last cell repeat it, they are quantized but never encoded.
+     */
+    final int[] colorsA;
+    final int[] colorsB;
+    /**
+     * Pattern of each cell, see {@link Blocks#glyphs}. 0 for a cell of a single color.
+     */
+    final int[] patterns;
+
+    // Sums of each component for each pattern, with the last pixel never part of the pattern
+    private final int[] sumR = new int[32];
+    private final int[] sumG = new int[32];
+    private final int[] sumB = new int[32];
+    // Components of the pixels of the cell
+    private final int[] r = new int[6];
+    private final int[] g = new int[6];
+    private final int[] b = new int[6];
+
+    BlockLine(int targetWidth) {
+        this.rows = new int[3][targetWidth];
+        this.colorsA = new int[targetWidth];
+        this.colorsB = new int[targetWidth];
+        this.patterns = new int[targetWidth];
+    }
+
+    /**
+     * Split every cell of the line in {@link #rows}.
+     *
+     * @param blocks the cell layout
+     * @param width  the number of pixels of each row
+     */
+    void split(Blocks blocks, int width) {
+        int columns = blocks.columns();
+        int pixels = columns * blocks.rows();
+        int cells = blocks.cells(width);
+        for (int cell = 0; cell < cells; ++cell) {
+            int n = 0;
+            for (int row = 0; row < blocks.rows(); ++row) {
+                int[] line = rows[row];
+                for (int column = 0; column < columns; ++column) {
+                    // The last cell of an odd width repeats its last column
+                    int p = line[Math.min(cell * columns + column, width - 1)];
+                    r[n] = (p >> 16) & 0xff;
+                    g[n] = (p >> 8) & 0xff;
+                    b[n] = p & 0xff;
+                    ++n;
+                }
+            }
+            splitCell(cell, pixels);
+        }
+        // Quantized as a whole row
+        for (int x = cells; x < width; ++x) {
+            colorsA[x] = colorsA[cells - 1];
+            colorsB[x] = colorsB[cells - 1];
+        }
+    }
+
+    private void splitCell(int cell, int n) {
+        // The last pixel is always in the second group, the other half of the patterns are the same splits inverted
+        int count = 1 << (n - 1);
+        for (int pattern = 1; pattern < count; ++pattern) {
+            int low = Integer.numberOfTrailingZeros(pattern);
+            int rest = pattern & (pattern - 1);
+            sumR[pattern] = sumR[rest] + r[low];
+            sumG[pattern] = sumG[rest] + g[low];
+            sumB[pattern] = sumB[rest] + b[low];
+        }
+        int totalR = sumR[count - 1] + r[n - 1];
+        int totalG = sumG[count - 1] + g[n - 1];
+        int totalB = sumB[count - 1] + b[n - 1];
+
+        // A single color unless a split is strictly better
+        int best = 0;
+        int bestScore = (totalR * totalR + totalG * totalG + totalB * totalB) * (LCM / n);
+        for (int pattern = 1; pattern < count; ++pattern) {
+            int k = Integer.bitCount(pattern);
+            int ar = sumR[pattern], ag = sumG[pattern], ab = sumB[pattern];
+            int br = totalR - ar, bg = totalG - ag, bb = totalB - ab;
+            int score = (ar * ar + ag * ag + ab * ab) * (LCM / k) + (br * br + bg * bg + bb * bb) * (LCM / (n - k));
+            if (score > bestScore) {
+                bestScore = score;
+                best = pattern;
+            }
+        }
+
+        patterns[cell] = best;
+        if (best == 0) {
+            int color = average(totalR, totalG, totalB, n);
+            colorsA[cell] = color;
+            colorsB[cell] = color;
+        } else {
+            int k = Integer.bitCount(best);
+            colorsA[cell] = average(sumR[best], sumG[best], sumB[best], k);
+            colorsB[cell] = average(totalR - sumR[best], totalG - sumG[best], totalB - sumB[best], n - k);
+        }
+    }
+
+    private static int average(int r, int g, int b, int n) {
+        int half = n >> 1;
+        return 0xff000000 | (r + half) / n << 16 | (g + half) / n << 8 | (b + half) / n;
+    }
+}
@@ -0,0 +1,92 @@
+package tech.guiyom.anscapes.renderer;
+
+/**
+ * Block characters cells are drawn with, and so how many pixels each cell shows.
+ * <p>
+ * Every cell shows 2 colors, a foreground and a background, so cells of more than 2 pixels are approximated :
+ * the pixels are split in the 2 groups that best match their average colors, and the glyph draws that split.
+ * The target size is still in pixels, a cell covers {@link #columns()} by {@link #rows()} of them.
+ */
+public enum Blocks {
+
+    /**
+     * Upper and lower half blocks, 1x2 pixels per cell.
+     */
+    HALF(1, 2, new int[]{' ', '\u2580', '\u2584', '\u2588'}),
+    /**
+     * Quadrants, 2x2 pixels per cell. Twice the horizontal resolution of half blocks for the same glyph size.
+     */
+    QUADRANT(2, 2, new int[]{
+            ' ', '\u2598', '\u259d', '\u2580', '\u2596', '\u258c', '\u259e', '\u259b',
+            '\u2597', '\u259a', '\u2590', '\u259c', '\u2584', '\u2599', '\u259f', '\u2588'}),
+    /**
+     * Sextants, 2x3 pixels per cell. The terminal font needs the Symbols for Legacy Computing block (Unicode 13),
+     * glyphs are outside the Basic Multilingual Plane : 2 chars, 4 bytes in UTF-8.
+     */
+    SEXTANT(2, 3, sextants());
+
+    private final int columns;
+    private final int rows;
+    /**
+     * Code point of the glyph drawing each pattern. Bit {@code row * columns + column} of a pattern
+     * is set when the pixel shows the foreground color.
+     */
+    final int[] glyphs;
+    /**
+     * All the pixels of a cell showing the foreground color.
+     */
+    final int full;
+
+    Blocks(int columns, int rows, int[] glyphs) {
+        this.columns = columns;
+        this.rows = rows;
+        this.glyphs = glyphs;
+        this.full = glyphs.length - 1;
+    }
+
+    /**
+     * Sextants are numbered like their patterns, except the left and right halves which are existing characters.
+     */
+    private static int[] sextants() {
+        int[] glyphs = new int[64];
+        glyphs[0] = ' ';
+        glyphs[21] = '\u258c';
+        glyphs[42] = '\u2590';
+        glyphs[63] = '\u2588';
+        int cp = 0x1fb00;
+        for (int pattern = 1; pattern < 63; ++pattern)
+            if (pattern != 21 && pattern != 42)
+                glyphs[pattern] = cp++;
+        return glyphs;
+    }
+
+    /**
+     * @return the pixel columns of a cell
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * @return the pixel rows of a cell
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * @param targetWidth the target width, in pixels
+     * @return the number of cells of each line
+     */
+    public int cells(int targetWidth) {
+        return (targetWidth + columns - 1) / columns;
+    }
+
+    /**
+     * @param targetHeight the target height, in pixels
+     * @return the number of lines
+     */
+    public int lines(int targetHeight) {
+        return (targetHeight + rows - 1) / rows;
+    }
+}
@@ -0,0 +1,114 @@
+package tech.guiyom.anscapes.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Output buffers shared between renderers.
+ * Renderers only hold a buffer while rendering a frame, so any number of renderers only costs
+ * the buffers of the frames being rendered at the same time.
+ * <p>
+ * Buffers are pooled by capacity, rounded to powers of 2, and a few buffers of each capacity are retained.
+ * Only renderers acquire and release buffers, a buffer handed to a consumer still belongs to the renderer.
+ * Instances are thread safe.
+ */
+public final class BufferPool {
+
+    private static final BufferPool SHARED = new BufferPool(4);
+
+    // Buffers with a capacity of at least 2^i are in the queue i
+    private final List<ArrayBlockingQueue<CharBuffer>> chars = new ArrayList<>(31);
+    private final List<ArrayBlockingQueue<ByteBuffer>> bytes = new ArrayList<>(31);
+
+    /**
+     * @param retained the number of buffers of each capacity that are kept for later use
+     */
+    public BufferPool(int retained) {
+        if (retained < 1)
+            throw new IllegalArgumentException("At least 1 buffer should be retained.");
+        for (int i = 0; i < 31; ++i) {
+            chars.add(new ArrayBlockingQueue<>(retained));
+            bytes.add(new ArrayBlockingQueue<>(retained));
+        }
+    }
+
+    /**
+     * @return the pool used by renderers by default
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param capacity the minimum capacity
+     * @return a cleared heap buffer
+     */
+    CharBuffer acquireChars(int capacity) {
+        int i = ceilLog2(capacity);
+        CharBuffer buf = chars.get(i).poll();
+        if (buf == null)
+            return CharBuffer.allocate(1 << i);
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * @param capacity the minimum capacity
+     * @return a cleared heap buffer
+     */
+    ByteBuffer acquireBytes(int capacity) {
+        int i = ceilLog2(capacity);
+        ByteBuffer buf = bytes.get(i).poll();
+        if (buf == null)
+            return ByteBuffer.allocate(1 << i);
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * Give a buffer back, it must not be used anymore.
+     *
+     * @param buf the buffer, dropped if the pool already retains enough buffers of this capacity
+     *            or if it isn't like the buffers of the pool
+     */
+    void release(CharBuffer buf) {
+        if (poolable(buf))
+            chars.get(floorLog2(buf.capacity())).offer(buf);
+    }
+
+    /**
+     * Give a buffer back, it must not be used anymore.
+     *
+     * @param buf the buffer, dropped if the pool already retains enough buffers of this capacity
+     *            or if it isn't like the buffers of the pool
+     */
+    void release(ByteBuffer buf) {
+        if (poolable(buf))
+            bytes.get(floorLog2(buf.capacity())).offer(buf);
+    }
+
+    /**
+     * Renderers write to the whole backing array of the buffers they acquire, like the ones allocated by the pool.
+     */
+    private static boolean poolable(Buffer buf) {
+        int capacity = buf.capacity();
+        return capacity > 0 && (capacity & (capacity - 1)) == 0
+                && buf.hasArray() && !buf.isReadOnly() && buf.arrayOffset() == 0;
+    }
+
+    private static int ceilLog2(int capacity) {
+        if (capacity <= 1)
+            return 0;
+        if (capacity > 1 << 30)
+            throw new IllegalArgumentException("Buffers are limited to 2^30 elements.");
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+
+    private static int floorLog2(int capacity) {
+        return Math.min(30, 31 - Integer.numberOfLeadingZeros(capacity));
+    }
+}
@@ -0,0 +1,308 @@
+package tech.guiyom.anscapes.renderer;
+
+import tech.guiyom.anscapes.Anscapes;
+import tech.guiyom.anscapes.ColorMetric;
+
+import java.util.Arrays;
+
+/**
+ * Render image sequences by only emitting the cells that changed since the previous frame.
+ * Unchanged runs of cells are skipped using cursor movements.
+ * <p>
+ * Frames are positioned absolutely on the terminal, starting at the configured origin
+ * (the top left corner by default). Every frame leaves the cursor on the line below the image.
+ * The first frame is always a full redraw, call {@link #invalidate()} to force one
+ * (e.g. when the terminal has been cleared or scrolled).
+ * <p>
+ * This renderer is stateful, use one instance per image sequence. Frames are always rendered on the calling thread.
+ */
+public class DeltaImageRenderer extends AbstractImageRenderer {
+
+    /**
+     * Longest cursor movement, to a position of 10 digits each.
+     */
+    private static final int MAX_MOVE_LENGTH = Anscapes.CSI.length() + 10 + 1 + 10 + 1;
+
+    private final AbstractImageRenderer renderer;
+    private final float redrawRatio;
+
+    // Colors currently displayed on the terminal, sized for half blocks which make the most lines.
+    // These are the colors emitted, current colors within the bias of the quantized ones are kept.
+    // For other blocks, the 2 colors of each cell and the pixels of the first one
+    private final int[][] displayedUpper;
+    private final int[][] displayedLower;
+    private final int[][] displayedPatterns;
+    // Quantized cells of the frame being rendered
+    private final int[][] upper;
+    private final int[][] lower;
+    private final int[][] patterns;
+    private boolean valid = false;
+    // Blocks of the cells displayed
+    private Blocks displayedBlocks;
+
+    // Terminal position of the top left cell, 1 based
+    private int originRow = 1;
+    private int originCol = 1;
+
+    /**
+     * Create a delta renderer that redraws the whole frame when at least half of the cells changed.
+     *
+     * @param renderer the renderer used to quantize and encode colors
+     */
+    public DeltaImageRenderer(AbstractImageRenderer renderer) {
+        this(renderer, 0.5f);
+    }
+
+    /**
+     * @param renderer    the renderer used to quantize and encode colors
+     * @param redrawRatio the ratio of changed cells, in [0,1], from which the whole frame is redrawn.
+     *                    Cursor movements are only worth it when few cells changed.
+     */
+    public DeltaImageRenderer(AbstractImageRenderer renderer, float redrawRatio) {
+        super(renderer.getColorMode(), renderer.getTargetWidth(), renderer.getTargetHeight());
+        this.renderer = renderer;
+        this.redrawRatio = redrawRatio;
+        int lines = Blocks.HALF.lines(targetHeight);
+        this.displayedUpper = new int[lines][targetWidth];
+        this.displayedLower = new int[lines][targetWidth];
+        this.displayedPatterns = new int[lines][targetWidth];
+        this.upper = new int[lines][targetWidth];
+        this.lower = new int[lines][targetWidth];
+        this.patterns = new int[lines][targetWidth];
+        setScaling(renderer.getScaling());
+        setBlocks(renderer.getBlocks());
+        setEraseRuns(renderer.isEraseRuns());
+    }
+
+    /**
+     * Set where the image is displayed on the terminal.
+     *
+     * @param row the terminal row of the top left cell, 1 based
+     * @param col the terminal column of the top left cell, 1 based
+     */
+    public void setOrigin(int row, int col) {
+        if (row != originRow || col != originCol) {
+            this.originRow = row;
+            this.originCol = col;
+            invalidate();
+        }
+    }
+
+    /**
+     * Forget the previous frame, the next one will be fully redrawn.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    @Override
+    protected int maxColorsLength() {
+        return renderer.maxColorsLength();
+    }
+
+    @Override
+    public ColorMetric getColorMetric() {
+        return renderer.getColorMetric();
+    }
+
+    @Override
+    int parameter() {
+        return renderer.parameter();
+    }
+
+    @Override
+    int bias() {
+        return renderer.bias();
+    }
+
+    @Override
+    boolean adjustBias(int bias) {
+        return renderer.adjustBias(bias);
+    }
+
+    @Override
+    public Dithering getDithering() {
+        return renderer.getDithering();
+    }
+
+    @Override
+    protected void quantize(int[] pixels, int offset, int y, int[] colors) {
+        renderer.quantize(pixels, offset, y, colors);
+    }
+
+    @Override
+    void quantize(int[] pixels, int offset, int y, int[] colors, RowSampler scratch) {
+        renderer.quantize(pixels, offset, y, colors, scratch);
+    }
+
+    @Override
+    protected void encodeFg(RenderOutput out, int color) {
+        renderer.encodeFg(out, color);
+    }
+
+    @Override
+    protected void encodeBg(RenderOutput out, int color) {
+        renderer.encodeBg(out, color);
+    }
+
+    @Override
+    protected void encodeColors(RenderOutput out, int fg, int bg) {
+        renderer.encodeColors(out, fg, bg);
+    }
+
+    @Override
+    protected boolean sameColor(int c1, int c2) {
+        return renderer.sameColor(c1, c2);
+    }
+
+    @Override
+    void render(FrameSource src, Workspace ws, RenderOutput out) {
+
+        out.clear();
+        Sampling sampling = prepare(src);
+
+        Blocks blocks = getBlocks();
+        if (blocks != displayedBlocks) {
+            displayedBlocks = blocks;
+            invalidate();
+        }
+        int lines = blocks.lines(targetHeight);
+        int cells = blocks.cells(targetWidth);
+        // A cursor movement before each cell at most
+        int lineLength = maxLineLength(cells) + cells * MAX_MOVE_LENGTH;
+        BlockLine blockLine = ws.blockLine(blocks);
+
+        int changed = 0;
+        for (int line = 0; line < lines; ++line) {
+            if (blockLine == null) {
+                quantizeLine(src, sampling, line * 2, ws.sampler, upper[line], lower[line]);
+                Arrays.fill(patterns[line], 0, cells, 1);
+            } else {
+                quantizeBlocks(src, sampling, blocks, line * blocks.rows(), ws.sampler, blockLine, upper[line], lower[line]);
+                System.arraycopy(blockLine.patterns, 0, patterns[line], 0, cells);
+            }
+            if (valid)
+                changed += countChanges(line, cells);
+        }
+
+        boolean full = !valid || changed >= redrawRatio * lines * cells;
+        boolean eraseRuns = isEraseRuns();
+        RenderMetrics.Frame metrics = ws.sampler.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        int reused = 0;
+
+        // Colors of the terminal are unknown when starting
+        long terminal = UNKNOWN_COLORS;
+        // Cursor position relative to the origin, the cursor is somewhere unknown when starting
+        int cursorLine = -1;
+        int cursorX = -1;
+
+        for (int line = 0; line < lines; ++line) {
+            int[] upperRow = upper[line];
+            int[] lowerRow = lower[line];
+            int[] patternRow = patterns[line];
+            int[] displayedUpperRow = displayedUpper[line];
+            int[] displayedLowerRow = displayedLower[line];
+            int[] displayedPatternRow = displayedPatterns[line];
+            out.reserve(lineLength);
+
+            for (int x = 0; x < cells; ++x) {
+                int u = upperRow[x];
+                int l = lowerRow[x];
+
+                if (!full && !changed(line, x)) {
+                    ++reused;
+                    continue;
+                }
+
+                // Move to the cell
+                if (cursorLine == line && cursorX < x) {
+                    moveRight(out, x - cursorX);
+                } else if (cursorLine != line || cursorX != x) {
+                    moveTo(out, line, x);
+                }
+
+                if (eraseRuns && sameColor(l, u)) {
+                    int end = runEnd(upperRow, lowerRow, x, cells);
+                    // Cells already displayed would be skipped, only count the others
+                    int cost = 0;
+                    for (int i = x; i < end; ++i)
+                        if (full || changed(line, i))
+                            ++cost;
+                    // Cursor movements are handled by the next changed cell
+                    if (cost > eraseLength(end - x, false)) {
+                        terminal = eraseCells(out, u, end - x, terminal);
+                        // The whole run shows the background, not the color of each cell
+                        Arrays.fill(displayedUpperRow, x, end, (int) terminal);
+                        Arrays.fill(displayedLowerRow, x, end, (int) terminal);
+                        System.arraycopy(patternRow, x, displayedPatternRow, x, end - x);
+                        cursorLine = line;
+                        cursorX = x;
+                        x = end - 1;
+                        continue;
+                    }
+                }
+
+                boolean single = sameColor(l, u);
+                boolean inverse = !single && inverse(u, l, terminal);
+                terminal = encodeCell(out, u, l, patternRow[x], blocks, terminal);
+
+                // Current colors within the bias are kept, record the ones the cell shows
+                int fg = (int) (terminal >> 32);
+                int bg = (int) terminal;
+                if (single) {
+                    int shown = bg != -1 && sameColor(u, bg) ? bg : fg;
+                    displayedUpperRow[x] = shown;
+                    displayedLowerRow[x] = shown;
+                } else {
+                    displayedUpperRow[x] = inverse ? bg : fg;
+                    displayedLowerRow[x] = inverse ? fg : bg;
+                }
+                displayedPatternRow[x] = patternRow[x];
+                cursorLine = line;
+                cursorX = x + 1;
+            }
+        }
+
+        out.reserve(Anscapes.RESET.length() + MAX_MOVE_LENGTH);
+        out.put(Anscapes.RESET);
+        moveTo(out, lines, 0);
+        if (metrics != null) {
+            metrics.encodeNanos += System.nanoTime() - start;
+            metrics.cellsReused = reused;
+        }
+
+        valid = true;
+    }
+
+    private int countChanges(int line, int cells) {
+        int changed = 0;
+        for (int x = 0; x < cells; ++x)
+            if (changed(line, x))
+                ++changed;
+        return changed;
+    }
+
+    /**
+     * A cell of a single color is the same whatever its pattern.
+     */
+    private boolean changed(int line, int x) {
+        int u = upper[line][x];
+        int l = lower[line][x];
+        if (!sameColor(u, displayedUpper[line][x]) || !sameColor(l, displayedLower[line][x]))
+            return true;
+        return patterns[line][x] != displayedPatterns[line][x] && !sameColor(l, u);
+    }
+
+    /**
+     * Same as {@link Anscapes#cursorPos(int, int)} relative to the origin.
+     */
+    private void moveTo(RenderOutput out, int line, int x) {
+        out.put(Anscapes.CSI);
+        out.putInt(originRow + line);
+        out.put(";");
+        out.putInt(originCol + x);
+        out.put("H");
+    }
+
+}
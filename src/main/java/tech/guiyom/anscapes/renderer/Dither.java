@@ -0,0 +1,64 @@
+package tech.guiyom.anscapes.renderer;
+
+import tech.guiyom.anscapes.ColorQuantizer;
+
+/**
+ * Dithered quantization of pixel rows to a palette, see {@link Dithering}.
+ */
+final class Dither {
+
+    /**
+     * 8x8 Bayer matrix, values are in [0,64).
+     */
+    private static final int[] BAYER = {
+            0, 32, 8, 40, 2, 34, 10, 42,
+            48, 16, 56, 24, 50, 18, 58, 26,
+            12, 44, 4, 36, 14, 46, 6, 38,
+            60, 28, 52, 20, 62, 30, 54, 22,
+            3, 35, 11, 43, 1, 33, 9, 41,
+            51, 19, 59, 27, 49, 17, 57, 25,
+            15, 47, 7, 39, 13, 45, 5, 37,
+            63, 31, 55, 23, 61, 29, 53, 21
+    };
+
+    private Dither() {}
+
+    /**
+     * @param spread about the distance between neighbouring palette colors
+     * @return the offset added to the components of a pixel for each cell of the Bayer matrix
+     */
+    static int[] offsets(int spread) {
+        int[] offsets = new int[BAYER.length];
+        for (int i = 0; i < BAYER.length; ++i)
+            offsets[i] = (2 * BAYER[i] + 1 - BAYER.length) * spread / (2 * BAYER.length);
+        return offsets;
+    }
+
+    /**
+     * Quantize a row with ordered dithering.
+     *
+     * @param pixels    the pixels
+     * @param offset    index of the first pixel of the row
+     * @param y         the row, to pick the line of the Bayer matrix
+     * @param width     the number of pixels
+     * @param offsets   see {@link #offsets(int)}
+     * @param quantizer the palette
+     * @param base      added to the palette indices
+     * @param colors    where to write the palette indices
+     */
+    static void ordered(int[] pixels, int offset, int y, int width, int[] offsets, ColorQuantizer quantizer, int base, int[] colors) {
+        int line = (y & 7) << 3;
+        for (int x = 0; x < width; ++x) {
+            int p = pixels[offset + x];
+            int d = offsets[line | (x & 7)];
+            int r = clamp(((p >> 16) & 0xff) + d);
+            int g = clamp(((p >> 8) & 0xff) + d);
+            int b = clamp((p & 0xff) + d);
+            colors[x] = base + quantizer.nearest(r << 16 | g << 8 | b);
+        }
+    }
+
+    static int clamp(int c) {
+        return Math.max(0, Math.min(255, c));
+    }
+}
@@ -0,0 +1,25 @@
+package tech.guiyom.anscapes.renderer;
+
+/**
+ * How colors between the palette colors are approximated, for the 16 and 256 colors renderers.
+ * Dithered images look a lot closer to the original but change color more often, so they encode bigger.
+ */
+public enum Dithering {
+
+    /**
+     * Each pixel is the nearest palette color. Gradients turn into flat bands.
+     */
+    NONE,
+    /**
+     * Ordered dithering with an 8x8 Bayer matrix. Pixels don't depend on each other so rows are still
+     * rendered in parallel, and a still area stays the same from frame to frame, which suits videos
+     * and {@link DeltaImageRenderer}.
+     */
+    ORDERED,
+    /**
+     * Floyd–Steinberg error diffusion, in serpentine order. The most accurate, but the error of each pixel
+     * is carried to the next ones : parallel bands don't share their errors, and a small change in a frame
+     * can change a lot of cells.
+     */
+    FLOYD_STEINBERG
+}
@@ -0,0 +1,73 @@
+package tech.guiyom.anscapes.renderer;
+
+import tech.guiyom.anscapes.ColorQuantizer;
+
+import java.util.Arrays;
+
+/**
+ * Floyd–Steinberg error diffusion over consecutive rows. One instance per rendering thread,
+ * see {@link RowSampler#diffusion}.
+ * <p>
+ * Only the errors of the current row and of the next one are kept, as 3 components per pixel
+ * with a pixel of padding on each side. Errors are stored multiplied by 16.
+ */
+final class ErrorDiffusion {
+
+    private int[] current;
+    private int[] next;
+    // Last row quantized, errors are only carried to the row right below
+    private int lastY = -2;
+
+    ErrorDiffusion(int width) {
+        this.current = new int[3 * (width + 2)];
+        this.next = new int[3 * (width + 2)];
+    }
+
+    /**
+     * Quantize a row, carrying the errors of the row above if it is the previous one quantized.
+     *
+     * @param pixels    the pixels
+     * @param offset    index of the first pixel of the row
+     * @param y         the row
+     * @param width     the number of pixels
+     * @param quantizer the palette
+     * @param base      added to the palette indices
+     * @param colors    where to write the palette indices
+     */
+    void quantize(int[] pixels, int offset, int y, int width, ColorQuantizer quantizer, int base, int[] colors) {
+        int[] cur = next;
+        int[] nxt = current;
+        if (y != lastY + 1)
+            Arrays.fill(cur, 0);
+        Arrays.fill(nxt, 0);
+        current = cur;
+        next = nxt;
+        lastY = y;
+
+        // Serpentine order, errors don't always drift to the right
+        int step = (y & 1) == 0 ? 1 : -1;
+        int x = step > 0 ? 0 : width - 1;
+        for (int n = 0; n < width; ++n, x += step) {
+            int p = pixels[offset + x];
+            int i = 3 * (x + 1);
+            int r = Dither.clamp(((p >> 16) & 0xff) + ((cur[i] + 8) >> 4));
+            int g = Dither.clamp(((p >> 8) & 0xff) + ((cur[i + 1] + 8) >> 4));
+            int b = Dither.clamp((p & 0xff) + ((cur[i + 2] + 8) >> 4));
+            int index = quantizer.nearest(r << 16 | g << 8 | b);
+            colors[x] = base + index;
+
+            int c = quantizer.color(index);
+            int s = 3 * step;
+            spread(cur, nxt, i, s, r - ((c >> 16) & 0xff));
+            spread(cur, nxt, i + 1, s, g - ((c >> 8) & 0xff));
+            spread(cur, nxt, i + 2, s, b - (c & 0xff));
+        }
+    }
+
+    private static void spread(int[] cur, int[] nxt, int i, int step, int error) {
+        cur[i + step] += 7 * error;
+        nxt[i - step] += 3 * error;
+        nxt[i] += 5 * error;
+        nxt[i + step] += error;
+    }
+}
@@ -0,0 +1,142 @@
+package tech.guiyom.anscapes.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Pixels of the frame being rendered, read in place from wherever they are stored.
+ * Instances are reused from frame to frame.
+ */
+abstract class FrameSource {
+
+    int width;
+    int height;
+
+    /**
+     * Read pixels of a row.
+     *
+     * @param y         the row to read
+     * @param columns   the columns to read
+     * @param count     the number of columns to read
+     * @param out       where to write the pixels, in ARGB
+     * @param outOffset where to write the first pixel
+     */
+    abstract void gather(int y, int[] columns, int count, int[] out, int outOffset);
+
+    /**
+     * Add the pixels of a whole row to sums of components, 2 components packed per int with 16 bits each.
+     * Sums overflow after 257 rows.
+     *
+     * @param y  the row to read
+     * @param rb sums of the red and blue components of each column
+     * @param ag sums of the alpha and green components of each column
+     */
+    abstract void accumulate(int y, int[] rb, int[] ag);
+
+    /**
+     * @return the pixels if they are stored as an ARGB int array starting at index 0, null otherwise
+     */
+    int[] array() {
+        return null;
+    }
+
+    static final class IntArray extends FrameSource {
+
+        private int[] data;
+
+        IntArray set(int[] data, int width, int height) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        @Override
+        void gather(int y, int[] columns, int count, int[] out, int outOffset) {
+            int row = y * width;
+            for (int i = 0; i < count; ++i)
+                out[outOffset + i] = data[row + columns[i]];
+        }
+
+        @Override
+        void accumulate(int y, int[] rb, int[] ag) {
+            int row = y * width;
+            for (int x = 0; x < width; ++x) {
+                int p = data[row + x];
+                rb[x] += p & 0xff00ff;
+                ag[x] += (p >>> 8) & 0xff00ff;
+            }
+        }
+
+        @Override
+        int[] array() {
+            return data;
+        }
+    }
+
+    static final class Ints extends FrameSource {
+
+        private IntBuffer buf;
+        private int base;
+
+        Ints set(IntBuffer buf, int width, int height) {
+            this.buf = buf;
+            this.base = buf.position();
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        @Override
+        void gather(int y, int[] columns, int count, int[] out, int outOffset) {
+            int row = base + y * width;
+            for (int i = 0; i < count; ++i)
+                out[outOffset + i] = buf.get(row + columns[i]);
+        }
+
+        @Override
+        void accumulate(int y, int[] rb, int[] ag) {
+            int row = base + y * width;
+            for (int x = 0; x < width; ++x) {
+                int p = buf.get(row + x);
+                rb[x] += p & 0xff00ff;
+                ag[x] += (p >>> 8) & 0xff00ff;
+            }
+        }
+    }
+
+    static final class Bytes extends FrameSource {
+
+        private ByteBuffer buf;
+        private PixelFormat format;
+        private int base;
+
+        Bytes set(ByteBuffer buf, PixelFormat format, int width, int height) {
+            this.buf = buf;
+            this.format = format;
+            this.base = buf.position();
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        @Override
+        void gather(int y, int[] columns, int count, int[] out, int outOffset) {
+            int bpp = format.bytesPerPixel();
+            int row = base + y * width * bpp;
+            for (int i = 0; i < count; ++i)
+                out[outOffset + i] = format.get(buf, row + columns[i] * bpp);
+        }
+
+        @Override
+        void accumulate(int y, int[] rb, int[] ag) {
+            int bpp = format.bytesPerPixel();
+            int row = base + y * width * bpp;
+            for (int x = 0; x < width; ++x) {
+                int p = format.get(buf, row + x * bpp);
+                rb[x] += p & 0xff00ff;
+                ag[x] += (p >>> 8) & 0xff00ff;
+            }
+        }
+    }
+}
@@ -3,10 +3,22 @@ package tech.guiyom.anscapes.renderer;
 import tech.guiyom.anscapes.ColorMode;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+/**
+ * Renders images to ANSI sequences.
+ * <p>
+ * The byte and in place overloads have default implementations going through {@link #render(int[], int, int, BiConsumer)}
+ * and {@link #renderString(int[], int, int)}, implementations only override them to avoid the copies.
+ */
 public interface ImageRenderer {
 
     /**
@@ -20,6 +32,8 @@ public interface ImageRenderer {
     static ImageRenderer createRenderer(ColorMode cmode, int targetWidth, int targetHeight) {
         if (cmode == ColorMode.ANSI) {
             return new AnsiImageRenderer(targetWidth, targetHeight);
+        } else if (cmode == ColorMode.PALETTE_256) {
+            return new Palette256ImageRenderer(targetWidth, targetHeight);
         } else if (cmode == ColorMode.RGB) {
             return new RgbImageRenderer(targetWidth, targetHeight);
         } else {
@@ -34,10 +48,95 @@ public interface ImageRenderer {
 
     void render(int[] data, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer);
 
+    /**
+     * Render a frame directly as UTF-8 bytes, no String is created.
+     *
+     * @param data           the pixel array
+     * @param originalWidth  the pixel array width
+     * @param originalHeight the pixel array height
+     * @param resultConsumer receives a buffer ready to be read, only valid until the consumer returns
+     */
+    default void renderBytes(int[] data, int originalWidth, int originalHeight, Consumer<ByteBuffer> resultConsumer) {
+        render(data, originalWidth, originalHeight,
+                (chars, length) -> resultConsumer.accept(StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars, 0, length))));
+    }
+
+    /**
+     * Render a frame as UTF-8 bytes and write it entirely to a channel.
+     *
+     * @param data           the pixel array
+     * @param originalWidth  the pixel array width
+     * @param originalHeight the pixel array height
+     * @param channel        the channel to write to
+     * @throws IOException if the channel throws
+     */
+    default void render(int[] data, int originalWidth, int originalHeight, WritableByteChannel channel) throws IOException {
+        ByteBuffer buf = StandardCharsets.UTF_8.encode(renderString(data, originalWidth, originalHeight));
+        while (buf.hasRemaining())
+            channel.write(buf);
+    }
+
+    /**
+     * Render a frame as UTF-8 bytes and write it to a stream.
+     *
+     * @param data           the pixel array
+     * @param originalWidth  the pixel array width
+     * @param originalHeight the pixel array height
+     * @param stream         the stream to write to, it is not flushed
+     * @throws IOException if the stream throws
+     */
+    default void render(int[] data, int originalWidth, int originalHeight, OutputStream stream) throws IOException {
+        stream.write(renderString(data, originalWidth, originalHeight).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Same as {@link #render(ByteBuffer, PixelFormat, int, int, BiConsumer)} with {@link PixelFormat#ARGB} pixels.
+     */
     void render(ByteBuffer buf, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer);
 
+    /**
+     * Render a frame read in place from a buffer, heap or direct. The buffer position is left untouched.
+     *
+     * @param buf            the pixels, starting at the buffer position
+     * @param format         the pixels layout
+     * @param originalWidth  the frame width
+     * @param originalHeight the frame height
+     * @param resultConsumer receives the output chars and their count, only valid until the consumer returns
+     */
+    default void render(ByteBuffer buf, PixelFormat format, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
+        render(pixels(buf, format, originalWidth, originalHeight), originalWidth, originalHeight, resultConsumer);
+    }
+
+    /**
+     * Same as {@link #render(ByteBuffer, PixelFormat, int, int, BiConsumer)}, rendering to UTF-8 bytes.
+     *
+     * @see #renderBytes(int[], int, int, Consumer)
+     */
+    default void renderBytes(ByteBuffer buf, PixelFormat format, int originalWidth, int originalHeight, Consumer<ByteBuffer> resultConsumer) {
+        renderBytes(pixels(buf, format, originalWidth, originalHeight), originalWidth, originalHeight, resultConsumer);
+    }
+
+    /**
+     * Render a frame read in place from a buffer of ARGB pixels, heap or direct. The buffer position is left untouched.
+     *
+     * @param buf            the pixels, starting at the buffer position
+     * @param originalWidth  the frame width
+     * @param originalHeight the frame height
+     * @param resultConsumer receives the output chars and their count, only valid until the consumer returns
+     */
     void render(IntBuffer buf, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer);
 
+    /**
+     * Same as {@link #render(IntBuffer, int, int, BiConsumer)}, rendering to UTF-8 bytes.
+     *
+     * @see #renderBytes(int[], int, int, Consumer)
+     */
+    default void renderBytes(IntBuffer buf, int originalWidth, int originalHeight, Consumer<ByteBuffer> resultConsumer) {
+        int[] data = new int[originalWidth * originalHeight];
+        buf.duplicate().get(data);
+        renderBytes(data, originalWidth, originalHeight, resultConsumer);
+    }
+
     String renderString(int[] data, int originalWidth, int originalHeight);
 
     String renderString(BufferedImage image);
@@ -45,4 +144,15 @@ public interface ImageRenderer {
     TerminalImage render(int[] data, int originalWidth, int originalHeight);
 
     TerminalImage render(BufferedImage image);
+
+    /**
+     * Copy a frame out of a buffer, for the default methods. Renderers of this library read frames in place.
+     */
+    private static int[] pixels(ByteBuffer buf, PixelFormat format, int originalWidth, int originalHeight) {
+        int[] data = new int[originalWidth * originalHeight];
+        int bpp = format.bytesPerPixel();
+        for (int i = 0, index = buf.position(); i < data.length; ++i, index += bpp)
+            data[i] = format.get(buf, index);
+        return data;
+    }
 }
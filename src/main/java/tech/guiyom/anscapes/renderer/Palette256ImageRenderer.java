@@ -0,0 +1,120 @@
+package tech.guiyom.anscapes.renderer;
+
+import tech.guiyom.anscapes.ColorMetric;
+import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.ColorQuantizer;
+import tech.guiyom.anscapes.Palette256;
+import tech.guiyom.anscapes.SgrEncoder;
+
+import java.nio.CharBuffer;
+
+/**
+ * Allow conversion of image to an ansi escape sequence using the xterm 256 colors palette.
+ * <p>
+ * Instances can be shared between threads, see {@link AbstractImageRenderer}.
+ */
+public class Palette256ImageRenderer extends AbstractImageRenderer {
+
+    // Ordered dithering offsets, about twice the distance between the levels of the color cube
+    private static final int[] DITHER_OFFSETS = Dither.offsets(96);
+    private static final int MAX_COLORS_LENGTH;
+
+    static {
+        CharBuffer buf = CharBuffer.allocate(64);
+        SgrEncoder.fgBg256(buf, 255, 255);
+        MAX_COLORS_LENGTH = buf.position();
+    }
+
+    private final ColorMetric metric;
+    // Only for metrics other than euclidean, the palette can be matched without a table otherwise
+    private final ColorQuantizer quantizer;
+    // Dithering needs the table even for the euclidean metric, set before the dithering
+    private volatile ColorQuantizer palette;
+    private volatile Dithering dithering = Dithering.NONE;
+
+    /**
+     * @param targetWidth  the target width for image rescaling
+     * @param targetHeight the target height for image rescaling
+     */
+    public Palette256ImageRenderer(int targetWidth, int targetHeight) {
+        this(targetWidth, targetHeight, ColorMetric.EUCLIDEAN);
+    }
+
+    /**
+     * @param targetWidth  the target width for image rescaling
+     * @param targetHeight the target height for image rescaling
+     * @param metric       how colors are compared
+     */
+    public Palette256ImageRenderer(int targetWidth, int targetHeight, ColorMetric metric) {
+        super(ColorMode.PALETTE_256, targetWidth, targetHeight);
+        this.metric = metric;
+        this.quantizer = metric == ColorMetric.EUCLIDEAN ? null : Palette256.quantizer(metric);
+    }
+
+    @Override
+    public ColorMetric getColorMetric() {
+        return metric;
+    }
+
+    /**
+     * Set how colors between the 256 colors are approximated.
+     *
+     * @param dithering the dithering, {@link Dithering#NONE} by default
+     */
+    public void setDithering(Dithering dithering) {
+        if (dithering != Dithering.NONE && palette == null)
+            palette = quantizer != null ? quantizer : Palette256.quantizer(metric);
+        this.dithering = dithering;
+    }
+
+    @Override
+    public Dithering getDithering() {
+        return dithering;
+    }
+
+    @Override
+    protected void quantize(int[] pixels, int offset, int y, int[] colors) {
+        if (quantizer == null)
+            for (int x = 0; x < targetWidth; ++x)
+                colors[x] = Palette256.nearest(pixels[offset + x]);
+        else
+            for (int x = 0; x < targetWidth; ++x)
+                colors[x] = 16 + quantizer.nearest(pixels[offset + x]);
+    }
+
+    @Override
+    void quantize(int[] pixels, int offset, int y, int[] colors, RowSampler scratch) {
+        switch (dithering) {
+            case ORDERED:
+                Dither.ordered(pixels, offset, y, targetWidth, DITHER_OFFSETS, palette, 16, colors);
+                break;
+            case FLOYD_STEINBERG:
+                if (scratch.diffusion == null)
+                    scratch.diffusion = new ErrorDiffusion(targetWidth);
+                scratch.diffusion.quantize(pixels, offset, y, targetWidth, palette, 16, colors);
+                break;
+            default:
+                quantize(pixels, offset, y, colors);
+        }
+    }
+
+    @Override
+    protected void encodeFg(RenderOutput out, int color) {
+        out.fg256(color);
+    }
+
+    @Override
+    protected void encodeBg(RenderOutput out, int color) {
+        out.bg256(color);
+    }
+
+    @Override
+    protected void encodeColors(RenderOutput out, int fg, int bg) {
+        out.fgBg256(fg, bg);
+    }
+
+    @Override
+    protected int maxColorsLength() {
+        return MAX_COLORS_LENGTH;
+    }
+}
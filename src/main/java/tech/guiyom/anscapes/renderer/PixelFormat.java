@@ -0,0 +1,69 @@
+package tech.guiyom.anscapes.renderer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of raw pixel data, in byte order.
+ * Pixels are read with absolute gets so any {@link ByteBuffer} works, heap or direct, whatever its byte order.
+ */
+public enum PixelFormat {
+
+    /**
+     * 3 bytes per pixel : red, green, blue. Like ffmpeg's rgb24.
+     */
+    RGB24(3) {
+        @Override
+        public int get(ByteBuffer buf, int index) {
+            return 0xff000000 | (buf.get(index) & 0xff) << 16 | (buf.get(index + 1) & 0xff) << 8 | (buf.get(index + 2) & 0xff);
+        }
+    },
+    /**
+     * 4 bytes per pixel : red, green, blue, alpha. Like ffmpeg's rgba.
+     */
+    RGBA(4) {
+        @Override
+        public int get(ByteBuffer buf, int index) {
+            return (buf.get(index + 3) & 0xff) << 24 | (buf.get(index) & 0xff) << 16 | (buf.get(index + 1) & 0xff) << 8 | (buf.get(index + 2) & 0xff);
+        }
+    },
+    /**
+     * 4 bytes per pixel : blue, green, red, alpha. {@link java.awt.image.BufferedImage#TYPE_INT_ARGB} pixels in little endian.
+     */
+    BGRA(4) {
+        @Override
+        public int get(ByteBuffer buf, int index) {
+            return (buf.get(index + 3) & 0xff) << 24 | (buf.get(index + 2) & 0xff) << 16 | (buf.get(index + 1) & 0xff) << 8 | (buf.get(index) & 0xff);
+        }
+    },
+    /**
+     * 4 bytes per pixel : alpha, red, green, blue. {@link java.awt.image.BufferedImage#TYPE_INT_ARGB} pixels in big endian.
+     */
+    ARGB(4) {
+        @Override
+        public int get(ByteBuffer buf, int index) {
+            return (buf.get(index) & 0xff) << 24 | (buf.get(index + 1) & 0xff) << 16 | (buf.get(index + 2) & 0xff) << 8 | (buf.get(index + 3) & 0xff);
+        }
+    };
+
+    private final int bytesPerPixel;
+
+    PixelFormat(int bytesPerPixel) {
+        this.bytesPerPixel = bytesPerPixel;
+    }
+
+    /**
+     * @return the size of a pixel in bytes
+     */
+    public int bytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    /**
+     * Read a pixel.
+     *
+     * @param buf   the raw pixels
+     * @param index the absolute index of the first byte of the pixel
+     * @return the pixel in ARGB
+     */
+    public abstract int get(ByteBuffer buf, int index);
+}
@@ -0,0 +1,343 @@
+package tech.guiyom.anscapes.renderer;
+
+import tech.guiyom.anscapes.ColorMetric;
+import tech.guiyom.anscapes.ColorMode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches rendered images, for images rendered over and over (avatars, logos ...).
+ * <p>
+ * Images are looked up by a 64 bit hash of their pixel data and the settings of the renderer
+ * (color mode, target size, bias or threshold, color metric, dithering, scaling, blocks, erased runs), so equivalent renderers share entries.
+ * On a hit, pixels are neither extracted nor rendered, only hashed in place.
+ * <p>
+ * Entries are evicted in least recently used order to stay under a budget of bytes.
+ * The cache is split in segments, each with its own lock, and rendering happens outside of any lock.
+ * Entries bigger than a segment (the budget divided by the number of segments) are never cached.
+ */
+public final class RenderCache {
+
+    /**
+     * Approximate size of an entry, without its sequence.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Segment[] segments;
+    private final long maxBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache with 8 segments.
+     *
+     * @param maxBytes the budget, in bytes
+     */
+    public RenderCache(long maxBytes) {
+        this(maxBytes, 8);
+    }
+
+    /**
+     * @param maxBytes    the budget, in bytes
+     * @param concurrency the number of segments, about the number of threads using the cache at the same time
+     */
+    public RenderCache(long maxBytes, int concurrency) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("The budget should be positive.");
+        if (concurrency < 1)
+            throw new IllegalArgumentException("There should be at least 1 segment.");
+        this.maxBytes = maxBytes;
+        this.segments = new Segment[concurrency];
+        for (int i = 0; i < concurrency; ++i)
+            segments[i] = new Segment(maxBytes / concurrency);
+    }
+
+    /**
+     * Same as {@link ImageRenderer#render(BufferedImage)}, using the cache.
+     *
+     * @param renderer the renderer, delta renderers can't be cached
+     * @param image    the image
+     * @return the rendered image
+     */
+    public TerminalImage render(ImageRenderer renderer, BufferedImage image) {
+        Key key = new Key(renderer, hash(image), image.getWidth(), image.getHeight());
+        Segment segment = segment(key);
+        TerminalImage result = segment.get(key);
+        if (result == null) {
+            result = renderer.render(image);
+            segment.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link ImageRenderer#render(int[], int, int)}, using the cache.
+     *
+     * @param renderer       the renderer, delta renderers can't be cached
+     * @param data           the pixel array
+     * @param originalWidth  the pixel array width
+     * @param originalHeight the pixel array height
+     * @return the rendered image
+     */
+    public TerminalImage render(ImageRenderer renderer, int[] data, int originalWidth, int originalHeight) {
+        Key key = new Key(renderer, hash(data, originalWidth * originalHeight), originalWidth, originalHeight);
+        Segment segment = segment(key);
+        TerminalImage result = segment.get(key);
+        if (result == null) {
+            result = renderer.render(data, originalWidth, originalHeight);
+            segment.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Remove every entry. Counters are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments)
+            segment.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the approximate size of the cached entries, in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : segments)
+            size += segment.bytes();
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderCache{hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount()
+                + ", size=" + getSize() + "/" + maxBytes + '}';
+    }
+
+    private Segment segment(Key key) {
+        int h = key.hashCode();
+        return segments[((h ^ (h >>> 16)) & 0x7fffffff) % segments.length];
+    }
+
+    private static long sizeOf(TerminalImage image) {
+        // Chars of the sequence, they may be compacted to 1 byte each but the worst case is safer
+        return 2L * image.getSequence().length() + ENTRY_OVERHEAD;
+    }
+
+    static long hash(int[] data, int length) {
+        // 4 independent lanes so the multiplications don't wait for each other
+        long h0 = 0, h1 = 1, h2 = 2, h3 = 3;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            h0 = (h0 ^ data[i]) * 0x9e3779b97f4a7c15L;
+            h1 = (h1 ^ data[i + 1]) * 0x9e3779b97f4a7c15L;
+            h2 = (h2 ^ data[i + 2]) * 0x9e3779b97f4a7c15L;
+            h3 = (h3 ^ data[i + 3]) * 0x9e3779b97f4a7c15L;
+        }
+        for (; i < length; ++i)
+            h0 = (h0 ^ data[i]) * 0x9e3779b97f4a7c15L;
+        return mix(h0, h1, h2, h3, length);
+    }
+
+    /**
+     * Hash the raster data of an image in place, whatever its type, without converting pixels.
+     */
+    static long hash(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        DataBuffer data = raster.getDataBuffer();
+        long h0 = 0, h1 = 1, h2 = 2, h3 = 3;
+        for (int bank = 0; bank < data.getNumBanks(); ++bank) {
+            int size = data.getSize();
+            int i = 0;
+            for (; i + 3 < size; i += 4) {
+                h0 = (h0 ^ data.getElem(bank, i)) * 0x9e3779b97f4a7c15L;
+                h1 = (h1 ^ data.getElem(bank, i + 1)) * 0x9e3779b97f4a7c15L;
+                h2 = (h2 ^ data.getElem(bank, i + 2)) * 0x9e3779b97f4a7c15L;
+                h3 = (h3 ^ data.getElem(bank, i + 3)) * 0x9e3779b97f4a7c15L;
+            }
+            for (; i < size; ++i)
+                h0 = (h0 ^ data.getElem(bank, i)) * 0x9e3779b97f4a7c15L;
+        }
+        // Sub images share the data of their parent, and indexed images need their palette
+        long layout = (long) image.getType() << 32
+                ^ (long) raster.getSampleModelTranslateX() << 16
+                ^ raster.getSampleModelTranslateY()
+                ^ (long) image.getColorModel().hashCode() << 40;
+        return mix(h0, h1, h2, h3, layout);
+    }
+
+    private static long mix(long h0, long h1, long h2, long h3, long extra) {
+        long h = h0 ^ Long.rotateLeft(h1, 16) ^ Long.rotateLeft(h2, 32) ^ Long.rotateLeft(h3, 48) ^ extra;
+        // Murmur3 finalizer
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * An image and the settings it is rendered with.
+     */
+    private static final class Key {
+
+        private final long contentHash;
+        private final int width;
+        private final int height;
+        // Renderer settings, or the renderer itself when unknown
+        private final Object renderer;
+        private final ColorMode colorMode;
+        private final int targetWidth;
+        private final int targetHeight;
+        private final int parameter;
+        private final int bias;
+        private final Scaling scaling;
+        private final Blocks blocks;
+        private final ColorMetric metric;
+        private final Dithering dithering;
+        private final boolean eraseRuns;
+
+        Key(ImageRenderer renderer, long contentHash, int width, int height) {
+            if (renderer instanceof DeltaImageRenderer)
+                throw new IllegalArgumentException("Delta renderers depend on the previous frame, they can't be cached.");
+            this.contentHash = contentHash;
+            this.width = width;
+            this.height = height;
+            this.colorMode = renderer.getColorMode();
+            if (renderer instanceof AbstractImageRenderer) {
+                AbstractImageRenderer r = (AbstractImageRenderer) renderer;
+                this.renderer = r.getClass();
+                this.targetWidth = r.getTargetWidth();
+                this.targetHeight = r.getTargetHeight();
+                this.parameter = r.parameter();
+                this.bias = r.bias();
+                this.scaling = r.getScaling();
+                this.blocks = r.getBlocks();
+                this.metric = r.getColorMetric();
+                this.dithering = r.getDithering();
+                this.eraseRuns = r.isEraseRuns();
+            } else {
+                this.renderer = renderer;
+                this.targetWidth = 0;
+                this.targetHeight = 0;
+                this.parameter = 0;
+                this.bias = 0;
+                this.scaling = null;
+                this.blocks = null;
+                this.metric = null;
+                this.dithering = null;
+                this.eraseRuns = false;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return contentHash == key.contentHash
+                    && width == key.width
+                    && height == key.height
+                    && targetWidth == key.targetWidth
+                    && targetHeight == key.targetHeight
+                    && parameter == key.parameter
+                    && bias == key.bias
+                    && eraseRuns == key.eraseRuns
+                    && renderer.equals(key.renderer)
+                    && colorMode == key.colorMode
+                    && scaling == key.scaling
+                    && blocks == key.blocks
+                    && metric == key.metric
+                    && dithering == key.dithering;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Long.hashCode(contentHash);
+            h = 31 * h + width;
+            h = 31 * h + height;
+            h = 31 * h + targetWidth;
+            h = 31 * h + targetHeight;
+            h = 31 * h + parameter;
+            h = 31 * h + bias;
+            return h;
+        }
+    }
+
+    /**
+     * A part of the cache with its own lock and budget.
+     */
+    private final class Segment {
+
+        private final long maxBytes;
+        // Iterated from the least recently used entry
+        private final LinkedHashMap<Key, TerminalImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized TerminalImage get(Key key) {
+            TerminalImage image = entries.get(key);
+            if (image != null)
+                hits.increment();
+            else
+                misses.increment();
+            return image;
+        }
+
+        synchronized void put(Key key, TerminalImage image) {
+            long size = sizeOf(image);
+            if (size > maxBytes)
+                return;
+            TerminalImage previous = entries.put(key, image);
+            if (previous != null)
+                bytes -= sizeOf(previous);
+            bytes += size;
+
+            Iterator<Map.Entry<Key, TerminalImage>> it = entries.entrySet().iterator();
+            while (bytes > maxBytes) {
+                bytes -= sizeOf(it.next().getValue());
+                it.remove();
+                evictions.increment();
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            bytes = 0;
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+    }
+}
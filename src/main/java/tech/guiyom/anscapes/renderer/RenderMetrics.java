@@ -0,0 +1,217 @@
+package tech.guiyom.anscapes.renderer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receives measures of every frame rendered, see {@link AbstractImageRenderer#setRenderMetrics(RenderMetrics)}.
+ * <p>
+ * Listeners are called on the rendering thread once the frame is encoded, before it is handed to the caller.
+ * A renderer shared by several threads calls its listener concurrently.
+ * Without any listener, a renderer takes no timestamp and only counts the sequences it writes.
+ */
+@FunctionalInterface
+public interface RenderMetrics {
+
+    /**
+     * @param frame the measures of the frame, only valid until this method returns
+     */
+    void frameRendered(Frame frame);
+
+    /**
+     * Measures of a frame. Instances are reused, copy what has to be kept.
+     * <p>
+     * Frames are resized a row at a time right before each row is quantized, stage times are the sums of all the rows.
+     * They are summed over all the threads of a parallel render, so they can exceed the total time.
+     */
+    final class Frame {
+
+        long resizeNanos;
+        long quantizeNanos;
+        long encodeNanos;
+        long totalNanos;
+        int length;
+        int fgEscapes;
+        int bgEscapes;
+        int cellsReused;
+        long pixelsResized;
+
+        Frame() {}
+
+        /**
+         * Start measuring a new frame.
+         */
+        void clear() {
+            resizeNanos = 0;
+            quantizeNanos = 0;
+            encodeNanos = 0;
+            pixelsResized = 0;
+            cellsReused = 0;
+        }
+
+        /**
+         * Add the stages of a part of the frame rendered by another thread.
+         */
+        void add(Frame part) {
+            resizeNanos += part.resizeNanos;
+            quantizeNanos += part.quantizeNanos;
+            encodeNanos += part.encodeNanos;
+            pixelsResized += part.pixelsResized;
+        }
+
+        /**
+         * @return the time spent sampling the frame at the target size, in nanoseconds
+         */
+        public long getResizeNanos() {
+            return resizeNanos;
+        }
+
+        /**
+         * @return the time spent converting pixels to the colors of the renderer, dithering and splitting cells included,
+         * in nanoseconds
+         */
+        public long getQuantizeNanos() {
+            return quantizeNanos;
+        }
+
+        /**
+         * @return the time spent writing sequences and characters, in nanoseconds
+         */
+        public long getEncodeNanos() {
+            return encodeNanos;
+        }
+
+        /**
+         * @return the time spent rendering the frame, from the first pixel read to the last sequence written,
+         * in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return the number of chars or UTF-8 bytes of the output, depending on what was rendered
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the number of sequences selecting a foreground color, a sequence selecting both colors counts for both
+         */
+        public int getFgEscapes() {
+            return fgEscapes;
+        }
+
+        /**
+         * @return the number of sequences selecting a background color, a sequence selecting both colors counts for both
+         */
+        public int getBgEscapes() {
+            return bgEscapes;
+        }
+
+        /**
+         * @return the number of cells left as displayed by the previous frame, only a {@link DeltaImageRenderer} reuses cells
+         */
+        public int getCellsReused() {
+            return cellsReused;
+        }
+
+        /**
+         * @return the number of target pixels sampled from a frame of another size, 0 for a frame already at the target size
+         */
+        public long getPixelsResized() {
+            return pixelsResized;
+        }
+
+        @Override
+        public String toString() {
+            return "Frame{resize=" + resizeNanos / 1000 + "us, quantize=" + quantizeNanos / 1000
+                    + "us, encode=" + encodeNanos / 1000 + "us, total=" + totalNanos / 1000
+                    + "us, length=" + length + ", fgEscapes=" + fgEscapes + ", bgEscapes=" + bgEscapes
+                    + ", cellsReused=" + cellsReused + ", pixelsResized=" + pixelsResized + '}';
+        }
+    }
+
+    /**
+     * Sums the measures of all the frames, for monitoring. Thread safe, a single instance can listen to several renderers.
+     */
+    final class Counters implements RenderMetrics {
+
+        private final LongAdder frames = new LongAdder();
+        private final LongAdder resizeNanos = new LongAdder();
+        private final LongAdder quantizeNanos = new LongAdder();
+        private final LongAdder encodeNanos = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder length = new LongAdder();
+        private final LongAdder fgEscapes = new LongAdder();
+        private final LongAdder bgEscapes = new LongAdder();
+        private final LongAdder cellsReused = new LongAdder();
+        private final LongAdder pixelsResized = new LongAdder();
+
+        @Override
+        public void frameRendered(Frame frame) {
+            frames.increment();
+            resizeNanos.add(frame.resizeNanos);
+            quantizeNanos.add(frame.quantizeNanos);
+            encodeNanos.add(frame.encodeNanos);
+            totalNanos.add(frame.totalNanos);
+            length.add(frame.length);
+            fgEscapes.add(frame.fgEscapes);
+            bgEscapes.add(frame.bgEscapes);
+            cellsReused.add(frame.cellsReused);
+            pixelsResized.add(frame.pixelsResized);
+        }
+
+        public long getFrameCount() {
+            return frames.sum();
+        }
+
+        public long getResizeNanos() {
+            return resizeNanos.sum();
+        }
+
+        public long getQuantizeNanos() {
+            return quantizeNanos.sum();
+        }
+
+        public long getEncodeNanos() {
+            return encodeNanos.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * @return the total length of the frames, in chars or bytes
+         */
+        public long getLength() {
+            return length.sum();
+        }
+
+        public long getFgEscapes() {
+            return fgEscapes.sum();
+        }
+
+        public long getBgEscapes() {
+            return bgEscapes.sum();
+        }
+
+        public long getCellsReused() {
+            return cellsReused.sum();
+        }
+
+        public long getPixelsResized() {
+            return pixelsResized.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Counters{frames=" + getFrameCount() + ", resize=" + getResizeNanos() / 1000
+                    + "us, quantize=" + getQuantizeNanos() / 1000 + "us, encode=" + getEncodeNanos() / 1000
+                    + "us, total=" + getTotalNanos() / 1000 + "us, length=" + getLength()
+                    + ", fgEscapes=" + getFgEscapes() + ", bgEscapes=" + getBgEscapes()
+                    + ", cellsReused=" + getCellsReused() + ", pixelsResized=" + getPixelsResized() + '}';
+        }
+    }
+}
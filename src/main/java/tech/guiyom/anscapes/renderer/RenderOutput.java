@@ -0,0 +1,380 @@
+package tech.guiyom.anscapes.renderer;
+
+import tech.guiyom.anscapes.SgrEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Where renderers write their output, either chars or UTF-8 bytes.
+ * Renderers are written once against this class and can emit both without any conversion step.
+ * <p>
+ * Writes past the end of the buffer throw a {@link java.nio.BufferOverflowException}.
+ * Renderers reserve room for each line before writing it, buffers of their pool grow as needed.
+ */
+public abstract class RenderOutput {
+
+    // Color sequences written by renderers since the last clear, see RenderMetrics
+    int fgEscapes;
+    int bgEscapes;
+    // Where the buffer comes from, null until acquired
+    BufferPool pool;
+
+    RenderOutput() {}
+
+    /**
+     * @param ascii an ASCII sequence
+     */
+    public abstract void put(String ascii);
+
+    /**
+     * @param glyph a character of the Basic Multilingual Plane
+     */
+    public abstract void putGlyph(char glyph);
+
+    /**
+     * @param codePoint any character, as 2 chars or 4 bytes when outside of the Basic Multilingual Plane
+     */
+    public abstract void putCodePoint(int codePoint);
+
+    /**
+     * @param n a positive integer to be written in decimal
+     */
+    public abstract void putInt(int n);
+
+    /**
+     * @see SgrEncoder#fgRgb(CharBuffer, int)
+     */
+    public abstract void fgRgb(int rgb);
+
+    /**
+     * @see SgrEncoder#bgRgb(CharBuffer, int)
+     */
+    public abstract void bgRgb(int rgb);
+
+    /**
+     * @see SgrEncoder#fg256(CharBuffer, int)
+     */
+    public abstract void fg256(int code);
+
+    /**
+     * @see SgrEncoder#bg256(CharBuffer, int)
+     */
+    public abstract void bg256(int code);
+
+    /**
+     * @see SgrEncoder#fgBgRgb(CharBuffer, int, int)
+     */
+    public abstract void fgBgRgb(int fg, int bg);
+
+    /**
+     * @see SgrEncoder#fgBg256(CharBuffer, int, int)
+     */
+    public abstract void fgBg256(int fg, int bg);
+
+    /**
+     * @see SgrEncoder#sgr(CharBuffer, int)
+     */
+    public abstract void sgr(int code);
+
+    /**
+     * @see SgrEncoder#sgr(CharBuffer, int, int)
+     */
+    public abstract void sgr(int code1, int code2);
+
+    /**
+     * @return the number of chars or bytes written since the last {@link #clear()}
+     */
+    public abstract int length();
+
+    /**
+     * Start writing from the beginning of the buffer again.
+     */
+    public abstract void clear();
+
+    /**
+     * @return a new output of the same kind, without any buffer until {@link #acquire(BufferPool, int)} is called
+     */
+    abstract RenderOutput create();
+
+    /**
+     * Write to a buffer of the pool from now on.
+     *
+     * @param pool     the pool
+     * @param capacity the minimum size of the buffer
+     */
+    abstract void acquire(BufferPool pool, int capacity);
+
+    /**
+     * Give the buffer back to the pool, nothing can be written until the next {@link #acquire(BufferPool, int)}.
+     *
+     * @param pool the pool
+     */
+    abstract void release(BufferPool pool);
+
+    /**
+     * Make sure the next chars or bytes fit, moving what was written to a larger buffer of the pool if needed.
+     *
+     * @param n the number of chars or bytes about to be written
+     */
+    abstract void reserve(int n);
+
+    /**
+     * Copy everything written to another output of the same kind.
+     *
+     * @param other the output to copy
+     */
+    abstract void append(RenderOutput other);
+
+    static final class Chars extends RenderOutput {
+
+        CharBuffer buf;
+
+        Chars(CharBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public void put(String ascii) {
+            buf.put(ascii);
+        }
+
+        @Override
+        public void putGlyph(char glyph) {
+            buf.put(glyph);
+        }
+
+        @Override
+        public void putCodePoint(int codePoint) {
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                buf.put((char) codePoint);
+            } else {
+                buf.put(Character.highSurrogate(codePoint));
+                buf.put(Character.lowSurrogate(codePoint));
+            }
+        }
+
+        @Override
+        public void putInt(int n) {
+            SgrEncoder.putInt(buf, n);
+        }
+
+        @Override
+        public void fgRgb(int rgb) {
+            SgrEncoder.fgRgb(buf, rgb);
+        }
+
+        @Override
+        public void bgRgb(int rgb) {
+            SgrEncoder.bgRgb(buf, rgb);
+        }
+
+        @Override
+        public void fg256(int code) {
+            SgrEncoder.fg256(buf, code);
+        }
+
+        @Override
+        public void bg256(int code) {
+            SgrEncoder.bg256(buf, code);
+        }
+
+        @Override
+        public void fgBgRgb(int fg, int bg) {
+            SgrEncoder.fgBgRgb(buf, fg, bg);
+        }
+
+        @Override
+        public void fgBg256(int fg, int bg) {
+            SgrEncoder.fgBg256(buf, fg, bg);
+        }
+
+        @Override
+        public void sgr(int code) {
+            SgrEncoder.sgr(buf, code);
+        }
+
+        @Override
+        public void sgr(int code1, int code2) {
+            SgrEncoder.sgr(buf, code1, code2);
+        }
+
+        @Override
+        public int length() {
+            return buf.position();
+        }
+
+        @Override
+        public void clear() {
+            buf.clear();
+            fgEscapes = 0;
+            bgEscapes = 0;
+        }
+
+        @Override
+        RenderOutput create() {
+            return new Chars(null);
+        }
+
+        @Override
+        void acquire(BufferPool pool, int capacity) {
+            buf = pool.acquireChars(capacity);
+            this.pool = pool;
+            fgEscapes = 0;
+            bgEscapes = 0;
+        }
+
+        @Override
+        void reserve(int n) {
+            if (pool == null || buf.remaining() >= n)
+                return;
+            CharBuffer larger = pool.acquireChars(Math.max(2 * buf.capacity(), buf.position() + n));
+            buf.flip();
+            larger.put(buf);
+            pool.release(buf);
+            buf = larger;
+        }
+
+        @Override
+        void release(BufferPool pool) {
+            if (buf != null)
+                pool.release(buf);
+            buf = null;
+            this.pool = null;
+        }
+
+        @Override
+        void append(RenderOutput other) {
+            buf.put(((Chars) other).buf.array(), 0, other.length());
+            fgEscapes += other.fgEscapes;
+            bgEscapes += other.bgEscapes;
+        }
+    }
+
+    static final class Bytes extends RenderOutput {
+
+        ByteBuffer buf;
+
+        Bytes(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public void put(String ascii) {
+            SgrEncoder.putAscii(buf, ascii);
+        }
+
+        @Override
+        public void putGlyph(char glyph) {
+            SgrEncoder.putUtf8(buf, glyph);
+        }
+
+        @Override
+        public void putCodePoint(int codePoint) {
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                SgrEncoder.putUtf8(buf, (char) codePoint);
+            } else {
+                buf.put((byte) (0xf0 | (codePoint >> 18)))
+                   .put((byte) (0x80 | ((codePoint >> 12) & 0x3f)))
+                   .put((byte) (0x80 | ((codePoint >> 6) & 0x3f)))
+                   .put((byte) (0x80 | (codePoint & 0x3f)));
+            }
+        }
+
+        @Override
+        public void putInt(int n) {
+            SgrEncoder.putInt(buf, n);
+        }
+
+        @Override
+        public void fgRgb(int rgb) {
+            SgrEncoder.fgRgb(buf, rgb);
+        }
+
+        @Override
+        public void bgRgb(int rgb) {
+            SgrEncoder.bgRgb(buf, rgb);
+        }
+
+        @Override
+        public void fg256(int code) {
+            SgrEncoder.fg256(buf, code);
+        }
+
+        @Override
+        public void bg256(int code) {
+            SgrEncoder.bg256(buf, code);
+        }
+
+        @Override
+        public void fgBgRgb(int fg, int bg) {
+            SgrEncoder.fgBgRgb(buf, fg, bg);
+        }
+
+        @Override
+        public void fgBg256(int fg, int bg) {
+            SgrEncoder.fgBg256(buf, fg, bg);
+        }
+
+        @Override
+        public void sgr(int code) {
+            SgrEncoder.sgr(buf, code);
+        }
+
+        @Override
+        public void sgr(int code1, int code2) {
+            SgrEncoder.sgr(buf, code1, code2);
+        }
+
+        @Override
+        public int length() {
+            return buf.position();
+        }
+
+        @Override
+        public void clear() {
+            buf.clear();
+            fgEscapes = 0;
+            bgEscapes = 0;
+        }
+
+        @Override
+        RenderOutput create() {
+            return new Bytes(null);
+        }
+
+        @Override
+        void acquire(BufferPool pool, int capacity) {
+            buf = pool.acquireBytes(capacity);
+            this.pool = pool;
+            fgEscapes = 0;
+            bgEscapes = 0;
+        }
+
+        @Override
+        void reserve(int n) {
+            if (pool == null || buf.remaining() >= n)
+                return;
+            ByteBuffer larger = pool.acquireBytes(Math.max(2 * buf.capacity(), buf.position() + n));
+            buf.flip();
+            larger.put(buf);
+            pool.release(buf);
+            buf = larger;
+        }
+
+        @Override
+        void release(BufferPool pool) {
+            if (buf != null)
+                pool.release(buf);
+            buf = null;
+            this.pool = null;
+        }
+
+        @Override
+        void append(RenderOutput other) {
+            buf.put(((Bytes) other).buf.array(), 0, other.length());
+            fgEscapes += other.fgEscapes;
+            bgEscapes += other.bgEscapes;
+        }
+    }
+}
@@ -1,14 +1,15 @@
 package tech.guiyom.anscapes.renderer;
 
-import tech.guiyom.anscapes.Anscapes;
-import tech.guiyom.anscapes.AnsiColor;
+import tech.guiyom.anscapes.ColorMetric;
 import tech.guiyom.anscapes.ColorMode;
-
-import java.util.function.BiConsumer;
+import tech.guiyom.anscapes.PackedColor;
 
 public class RgbImageRenderer extends AbstractImageRenderer {
 
-    private final int bias;
+    private final ColorMetric metric;
+    // Can change between frames, see BitrateController
+    private volatile int bias;
+    private volatile int biasSq;
 
     /**
      * Create a new ImageRenderer that render images with 24bit colors.
@@ -29,62 +30,88 @@ public class RgbImageRenderer extends AbstractImageRenderer {
      * @param bias
      */
     public RgbImageRenderer(int targetWidth, int targetHeight, int bias) {
+        this(targetWidth, targetHeight, bias, ColorMetric.EUCLIDEAN);
+    }
+
+    /**
+     * Create a new ImageRenderer that render images with 24bit colors.
+     *
+     * @param targetWidth
+     * @param targetHeight
+     * @param bias         distance under which a color is not emitted again, in the units of the metric
+     * @param metric       how the bias is measured
+     */
+    public RgbImageRenderer(int targetWidth, int targetHeight, int bias, ColorMetric metric) {
         super(ColorMode.RGB, targetWidth, targetHeight);
         this.bias = bias;
+        this.metric = metric;
+        this.biasSq = metric.squared(bias);
+    }
+
+    /**
+     * Change the bias, frames being rendered may use the previous one.
+     *
+     * @param bias distance under which a color is not emitted again, in the units of the metric
+     */
+    public void setBias(int bias) {
+        this.biasSq = metric.squared(bias);
+        this.bias = bias;
+    }
+
+    public int getBias() {
+        return bias;
+    }
+
+    @Override
+    int parameter() {
+        return bias;
+    }
+
+    @Override
+    int bias() {
+        return bias;
     }
 
-    // TODO control background color when dealing with transparent images
+    @Override
+    boolean adjustBias(int bias) {
+        setBias(bias);
+        return true;
+    }
 
     @Override
-    public void render(int[] data, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
-
-        // Resize if needed
-        if (originalWidth != targetWidth || originalHeight != targetHeight) {
-            resize(data, originalWidth, originalHeight);
-            data = resizeBuffer;
-        }
-
-        this.outputBuffer.reset();
-        AnsiColor prevUpper = null;
-        AnsiColor prevLower = null;
-
-        for (int i = 0; i < targetHeight / 2; ++i) {
-
-            int y = i * 2;
-            for (int x = 0; x < targetWidth; ++x) {
-                AnsiColor upper = Anscapes.rgb(data[y * targetHeight + x]);
-                AnsiColor lower = null;
-                if (y + 1 < targetHeight) {
-                    lower = Anscapes.rgb(data[y * targetHeight + targetHeight + x]);
-                } else {
-                    lower = Anscapes.Colors.BLACK;
-                }
-
-                if (bias == 0) {
-                    if (!upper.equals(prevUpper))
-                        outputBuffer.put(upper.fg());
-                    if (!lower.equals(prevLower))
-                        outputBuffer.put(lower.bg());
-                } else {
-                    if (upper.diffBiased(prevUpper, bias))
-                        outputBuffer.put(upper.fg());
-                    if (lower.diffBiased(prevLower, bias))
-                        outputBuffer.put(lower.bg());
-                }
-
-                outputBuffer.put(CHAR_TOP);
-
-                prevUpper = upper;
-                prevLower = lower;
-            }
-
-            outputBuffer.put(Anscapes.RESET);
-            outputBuffer.put(System.lineSeparator());
-
-            prevUpper = null;
-            prevLower = null;
-        }
-
-        resultConsumer.accept(outputBuffer.array(), outputBuffer.position());
+    public ColorMetric getColorMetric() {
+        return metric;
+    }
+
+    @Override
+    protected void quantize(int[] pixels, int offset, int y, int[] colors) {
+        for (int x = 0; x < targetWidth; ++x)
+            colors[x] = pixels[offset + x] & 0xffffff;
+    }
+
+    @Override
+    protected void encodeFg(RenderOutput out, int color) {
+        out.fgRgb(color);
+    }
+
+    @Override
+    protected void encodeBg(RenderOutput out, int color) {
+        out.bgRgb(color);
+    }
+
+    @Override
+    protected void encodeColors(RenderOutput out, int fg, int bg) {
+        out.fgBgRgb(fg, bg);
+    }
+
+    /**
+     * Same as {@link PackedColor#equals(int, int, int, ColorMetric)}, with the squared bias computed once.
+     */
+    @Override
+    protected boolean sameColor(int c1, int c2) {
+        int biasSq = this.biasSq;
+        if (biasSq == 0)
+            return c1 == c2;
+        return metric.distanceSq(c1, c2) <= biasSq;
     }
 }
@@ -0,0 +1,118 @@
+package tech.guiyom.anscapes.renderer;
+
+import java.util.Arrays;
+
+/**
+ * Scratch space used to sample a row of a frame at the target size. One instance per rendering thread.
+ */
+final class RowSampler {
+
+    /**
+     * Rows summed before the 16 bits packed sums overflow : 257 * 255 = 65535.
+     */
+    private static final int MAX_PACKED_ROWS = 257;
+
+    /**
+     * The sampled pixels, in ARGB.
+     */
+    final int[] row;
+
+    // Area averaging only, sized for the source width
+    // Packed sums of the red and blue, alpha and green components of each source column
+    private int[] rb;
+    private int[] ag;
+    // Sums of the a, r, g and b components of each source column, unpacked
+    private int[] sums;
+
+    /**
+     * Errors carried between rows by the renderers using {@link Dithering#FLOYD_STEINBERG}, created by them.
+     */
+    ErrorDiffusion diffusion;
+
+    /**
+     * Measures of the frame being rendered by this thread, null when the renderer has no {@link RenderMetrics}.
+     */
+    RenderMetrics.Frame metrics;
+
+    RowSampler(int targetWidth) {
+        this.row = new int[targetWidth];
+    }
+
+    /**
+     * Nearest neighbour sampling of a row.
+     *
+     * @param src     the frame
+     * @param y       the source row
+     * @param columns the source column of each target pixel
+     */
+    void nearest(FrameSource src, int y, int[] columns) {
+        src.gather(y, columns, row.length, row, 0);
+    }
+
+    /**
+     * Area averaging of a row. Source rows are summed column by column first, 2 components at a time,
+     * then each target pixel sums the columns it covers. Integer only.
+     *
+     * @param src     the frame
+     * @param fromRow the first source row covered
+     * @param toRow   the last source row covered, exclusive
+     * @param starts  the first source column covered by each target pixel
+     * @param ends    the last source column covered by each target pixel, exclusive
+     */
+    void average(FrameSource src, int fromRow, int toRow, int[] starts, int[] ends) {
+
+        int width = src.width;
+        if (sums == null || rb.length < width) {
+            rb = new int[width];
+            ag = new int[width];
+            sums = new int[4 * width];
+        }
+
+        // Vertical pass, by chunks of rows that can't overflow the packed sums
+        for (int from = fromRow; from < toRow; from += MAX_PACKED_ROWS) {
+            Arrays.fill(rb, 0, width, 0);
+            Arrays.fill(ag, 0, width, 0);
+            int to = Math.min(toRow, from + MAX_PACKED_ROWS);
+            for (int y = from; y < to; ++y)
+                src.accumulate(y, rb, ag);
+
+            // Unpack, at most 255 * height per sum
+            boolean first = from == fromRow;
+            for (int x = 0, i = 0; x < width; ++x, i += 4) {
+                int a = ag[x] >>> 16;
+                int r = rb[x] >>> 16;
+                int g = ag[x] & 0xffff;
+                int b = rb[x] & 0xffff;
+                if (first) {
+                    sums[i] = a;
+                    sums[i + 1] = r;
+                    sums[i + 2] = g;
+                    sums[i + 3] = b;
+                } else {
+                    sums[i] += a;
+                    sums[i + 1] += r;
+                    sums[i + 2] += g;
+                    sums[i + 3] += b;
+                }
+            }
+        }
+
+        // Horizontal pass, a box covering a whole 4K frame would overflow an int
+        int height = toRow - fromRow;
+        for (int j = 0; j < row.length; ++j) {
+            long a = 0, r = 0, g = 0, b = 0;
+            for (int i = 4 * starts[j], end = 4 * ends[j]; i < end; i += 4) {
+                a += sums[i];
+                r += sums[i + 1];
+                g += sums[i + 2];
+                b += sums[i + 3];
+            }
+            long area = (long) (ends[j] - starts[j]) * height;
+            long half = area >> 1;
+            row[j] = (int) ((a + half) / area) << 24
+                    | (int) ((r + half) / area) << 16
+                    | (int) ((g + half) / area) << 8
+                    | (int) ((b + half) / area);
+        }
+    }
+}
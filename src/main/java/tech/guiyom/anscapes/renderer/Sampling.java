@@ -0,0 +1,79 @@
+package tech.guiyom.anscapes.renderer;
+
+/**
+ * Where the pixels of each target row and column are sampled from, for a source size and a scaling.
+ * Immutable, shared by every thread rendering with the same renderer.
+ */
+final class Sampling {
+
+    final int sourceWidth;
+    final int sourceHeight;
+    final Scaling scaling;
+    // Source column of each target column
+    // When area averaging, the first source column covered and the last one (exclusive)
+    final int[] columns;
+    final int[] columnEnds;
+    // Same for rows
+    final int[] rows;
+    final int[] rowEnds;
+
+    Sampling(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight, Scaling scaling) {
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.scaling = scaling;
+        this.columns = new int[targetWidth];
+        this.rows = new int[targetHeight];
+        if (scaling == Scaling.AREA_AVERAGE) {
+            this.columnEnds = new int[targetWidth];
+            this.rowEnds = new int[targetHeight];
+            computeBoxes(sourceWidth, targetWidth, columns, columnEnds);
+            computeBoxes(sourceHeight, targetHeight, rows, rowEnds);
+        } else {
+            this.columnEnds = null;
+            this.rowEnds = null;
+            computeSamples(sourceWidth, targetWidth, columns);
+            computeSamples(sourceHeight, targetHeight, rows);
+        }
+    }
+
+    boolean matches(FrameSource src, Scaling scaling) {
+        return src.width == sourceWidth && src.height == sourceHeight && scaling == this.scaling;
+    }
+
+    /**
+     * Sample a target row.
+     *
+     * @param src     the frame
+     * @param y       the target row
+     * @param sampler where to write the sampled pixels
+     */
+    void sample(FrameSource src, int y, RowSampler sampler) {
+        if (scaling == Scaling.AREA_AVERAGE)
+            sampler.average(src, rows[y], rowEnds[y], columns, columnEnds);
+        else
+            sampler.nearest(src, rows[y], columns);
+    }
+
+    /**
+     * Nearest neighbour sampling of the source column (or row) for each target column (or row).
+     */
+    private static void computeSamples(int originalSize, int targetSize, int[] samples) {
+        // EDIT: added +1 to account for an early rounding problem
+        int ratio = ((originalSize << 16) / targetSize) + 1;
+        for (int j = 0; j < targetSize; j++)
+            samples[j] = (j * ratio) >> 16;
+    }
+
+    /**
+     * Source columns (or rows) covered by each target column (or row) when area averaging.
+     * Boxes never overlap when downscaling, when upscaling they are one source pixel wide.
+     */
+    private static void computeBoxes(int originalSize, int targetSize, int[] starts, int[] ends) {
+        for (int j = 0; j < targetSize; j++) {
+            int start = (int) ((long) j * originalSize / targetSize);
+            int end = (int) ((long) (j + 1) * originalSize / targetSize);
+            starts[j] = start;
+            ends[j] = Math.max(end, start + 1);
+        }
+    }
+}
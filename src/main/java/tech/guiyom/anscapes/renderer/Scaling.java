@@ -0,0 +1,18 @@
+package tech.guiyom.anscapes.renderer;
+
+/**
+ * How frames are resized to the target size.
+ */
+public enum Scaling {
+
+    /**
+     * Each target pixel is the source pixel under its top left corner. Fastest, but small details alias
+     * when downscaling a lot, which makes colors change from cell to cell and grows the output.
+     */
+    NEAREST,
+    /**
+     * Each target pixel is the average of all the source pixels it covers. Reads every source pixel once,
+     * smoother images have fewer color changes and encode smaller.
+     */
+    AREA_AVERAGE
+}
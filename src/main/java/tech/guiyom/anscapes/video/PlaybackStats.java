@@ -0,0 +1,73 @@
+package tech.guiyom.anscapes.video;
+
+/**
+ * What happened during a playback.
+ */
+public final class PlaybackStats {
+
+    private final long framesRead;
+    private final long framesWritten;
+    private final long framesDropped;
+    private final long bytesWritten;
+    private final long elapsedNanos;
+
+    PlaybackStats(long framesRead, long framesWritten, long framesDropped, long bytesWritten, long elapsedNanos) {
+        this.framesRead = framesRead;
+        this.framesWritten = framesWritten;
+        this.framesDropped = framesDropped;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the number of frames read from the source
+     */
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    /**
+     * @return the number of frames written to the terminal
+     */
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    /**
+     * @return the number of frames skipped because the playback was late
+     */
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    /**
+     * @return the number of bytes written to the terminal
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the duration of the playback in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the number of frames written per second
+     */
+    public double getFps() {
+        return elapsedNanos == 0 ? 0 : framesWritten * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d frames read, %d written, %d dropped, %.2f fps, %.1f KiB/frame",
+                framesRead,
+                framesWritten,
+                framesDropped,
+                getFps(),
+                framesWritten == 0 ? 0.0 : bytesWritten / 1024.0 / framesWritten);
+    }
+}
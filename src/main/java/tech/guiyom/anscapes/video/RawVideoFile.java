@@ -0,0 +1,111 @@
+package tech.guiyom.anscapes.video;
+
+import tech.guiyom.anscapes.renderer.PixelFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of fixed size raw frames (e.g. a dump of {@code ffmpeg -f rawvideo}), memory mapped for random access.
+ * <p>
+ * Frames are never copied, {@link #frame(long)} returns a view of the mapping that can be given as is to
+ * {@link tech.guiyom.anscapes.renderer.ImageRenderer#renderBytes(ByteBuffer, PixelFormat, int, int, java.util.function.Consumer)}.
+ * The OS page cache does the reading. Files larger than 2 GiB are mapped in several regions.
+ * <p>
+ * Instances are immutable once opened and can be shared between threads.
+ */
+public final class RawVideoFile implements Closeable {
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final PixelFormat format;
+    private final int frameSize;
+    private final long frameCount;
+    private final int framesPerRegion;
+    private final MappedByteBuffer[] regions;
+
+    /**
+     * Open and map a file. A trailing incomplete frame is ignored.
+     *
+     * @param path   the file
+     * @param width  the frames width
+     * @param height the frames height
+     * @param format the frames layout
+     * @throws IOException if the file can't be opened or mapped
+     */
+    public RawVideoFile(Path path, int width, int height, PixelFormat format) throws IOException {
+
+        long size = (long) width * height * format.bytesPerPixel();
+        if (size <= 0 || size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Frame size should be between 1 byte and 2 GiB.");
+
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.frameSize = (int) size;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            this.frameCount = channel.size() / frameSize;
+            // Regions hold whole frames
+            this.framesPerRegion = Integer.MAX_VALUE / frameSize;
+            int regionCount = (int) ((frameCount + framesPerRegion - 1) / framesPerRegion);
+            this.regions = new MappedByteBuffer[regionCount];
+            for (int i = 0; i < regionCount; ++i) {
+                long first = (long) i * framesPerRegion;
+                long count = Math.min(framesPerRegion, frameCount - first);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * frameSize, count * frameSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get a frame, without copying it.
+     *
+     * @param index the frame index, in [0,{@link #getFrameCount()}[
+     * @return a read only view of the frame pixels, from position 0 to its limit
+     */
+    public ByteBuffer frame(long index) {
+
+        if (index < 0 || index >= frameCount)
+            throw new IndexOutOfBoundsException("Frame " + index + " out of " + frameCount);
+
+        int offset = (int) (index % framesPerRegion) * frameSize;
+        ByteBuffer view = regions[(int) (index / framesPerRegion)].asReadOnlyBuffer();
+        view.position(offset).limit(offset + frameSize);
+        return view.slice();
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public PixelFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Close the file. Mappings are only released once garbage collected, frames must not be used anymore.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,317 @@
+package tech.guiyom.anscapes.video;
+
+import tech.guiyom.anscapes.Anscapes;
+import tech.guiyom.anscapes.renderer.ImageRenderer;
+import tech.guiyom.anscapes.renderer.PixelFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a stream of fixed size raw frames (e.g. the output of {@code ffmpeg -f rawvideo}) on a terminal,
+ * or a range of frames of a {@link RawVideoFile}.
+ * <p>
+ * Frames are read, rendered and written by 3 different threads connected by bounded queues, every buffer is pooled.
+ * Frames are paced to the target frame rate. When the playback falls behind, late frames are dropped before being rendered,
+ * which makes it safe to use a {@link tech.guiyom.anscapes.renderer.DeltaImageRenderer}.
+ * A slow source is never dropped from, it only lowers the frame rate.
+ */
+public class VideoPlayer {
+
+    private static final byte[] CLEAR = Anscapes.CLEAR.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HOME = Anscapes.RESET_CURSOR.getBytes(StandardCharsets.US_ASCII);
+
+    private final ImageRenderer renderer;
+    private final int frameWidth;
+    private final int frameHeight;
+    private final PixelFormat format;
+    private final long periodNanos;
+    private final int bufferCount;
+
+    /**
+     * @param renderer    the renderer, only used by the render thread
+     * @param frameWidth  the width of source frames
+     * @param frameHeight the height of source frames
+     * @param format      the layout of source frames
+     * @param fps         the target frame rate
+     */
+    public VideoPlayer(ImageRenderer renderer, int frameWidth, int frameHeight, PixelFormat format, double fps) {
+        this(renderer, frameWidth, frameHeight, format, fps, 3);
+    }
+
+    /**
+     * @param renderer    the renderer, only used by the render thread
+     * @param frameWidth  the width of source frames
+     * @param frameHeight the height of source frames
+     * @param format      the layout of source frames
+     * @param fps         the target frame rate
+     * @param bufferCount the number of frames buffered between each stage
+     */
+    public VideoPlayer(ImageRenderer renderer, int frameWidth, int frameHeight, PixelFormat format, double fps, int bufferCount) {
+
+        if (fps <= 0)
+            throw new IllegalArgumentException("Frame rate should be positive.");
+        if (bufferCount < 1)
+            throw new IllegalArgumentException("There should be at least 1 buffer.");
+
+        this.renderer = renderer;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.format = format;
+        this.periodNanos = (long) (1e9 / fps);
+        this.bufferCount = bufferCount;
+    }
+
+    /**
+     * Play frames until the end of the source. Blocks until the last frame has been written.
+     *
+     * @param in  the source of raw frames, a trailing incomplete frame is ignored
+     * @param out the terminal
+     * @return the playback statistics
+     * @throws IOException          if reading or writing failed
+     * @throws InterruptedException if interrupted while waiting for the playback to end
+     */
+    public PlaybackStats play(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        Playback playback = new Playback(frame -> {
+            if (frame.pixels == null) {
+                frame.pixels = new byte[frameWidth * frameHeight * format.bytesPerPixel()];
+                frame.buffer = ByteBuffer.wrap(frame.pixels);
+            }
+            return readFully(in, frame.pixels);
+        }, frameWidth, frameHeight, format, out);
+        return playback.run();
+    }
+
+    /**
+     * Play a range of frames from a file, frames are rendered in place from the file mapping.
+     * The frame size and format given to this player are ignored, those of the file are used.
+     *
+     * @param file the file
+     * @param from the first frame to play
+     * @param to   the last frame to play, exclusive
+     * @param out  the terminal
+     * @return the playback statistics
+     * @throws IOException          if writing failed
+     * @throws InterruptedException if interrupted while waiting for the playback to end
+     */
+    public PlaybackStats play(RawVideoFile file, long from, long to, OutputStream out) throws IOException, InterruptedException {
+
+        if (from < 0 || to > file.getFrameCount() || from > to)
+            throw new IndexOutOfBoundsException("Invalid range [" + from + "," + to + "[ out of " + file.getFrameCount() + " frames");
+
+        long[] next = { from };
+        Playback playback = new Playback(frame -> {
+            if (next[0] >= to)
+                return false;
+            frame.buffer = file.frame(next[0]++);
+            return true;
+        }, file.getWidth(), file.getHeight(), file.getFormat(), out);
+        return playback.run();
+    }
+
+    private static boolean readFully(InputStream in, byte[] buf) throws IOException {
+        int n = 0;
+        while (n < buf.length) {
+            int read = in.read(buf, n, buf.length - n);
+            // An incomplete frame is ignored
+            if (read < 0)
+                return false;
+            n += read;
+        }
+        return true;
+    }
+
+    /**
+     * Fills frames one after the other.
+     */
+    private interface FrameReader {
+
+        /**
+         * @param frame the frame to fill
+         * @return false when there is no more frames
+         */
+        boolean read(Frame frame) throws IOException;
+    }
+
+    /**
+     * A frame travelling through the pipeline.
+     */
+    private static final class Frame {
+        static final Frame END = new Frame();
+
+        // Only used when reading from a stream
+        byte[] pixels;
+        ByteBuffer buffer;
+        long index;
+    }
+
+    /**
+     * A rendered frame travelling through the pipeline.
+     */
+    private static final class Rendered {
+        static final Rendered END = new Rendered();
+
+        ByteBuffer data = ByteBuffer.allocate(0);
+        long index;
+    }
+
+    private final class Playback {
+
+        private final FrameReader reader;
+        private final int width;
+        private final int height;
+        private final PixelFormat format;
+        private final OutputStream out;
+
+        private final BlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<>(bufferCount);
+        private final BlockingQueue<Frame> frames = new ArrayBlockingQueue<>(bufferCount + 1);
+        private final BlockingQueue<Rendered> freeRendered = new ArrayBlockingQueue<>(bufferCount);
+        private final BlockingQueue<Rendered> rendered = new ArrayBlockingQueue<>(bufferCount + 1);
+
+        // Set when the first frame is rendered
+        private volatile long startNanos;
+        private volatile Throwable failure;
+
+        private volatile long framesRead;
+        private long framesWritten;
+        private long framesDropped;
+        private long bytesWritten;
+
+        Playback(FrameReader reader, int width, int height, PixelFormat format, OutputStream out) {
+            this.reader = reader;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.out = out;
+            for (int i = 0; i < bufferCount; ++i) {
+                freeFrames.add(new Frame());
+                freeRendered.add(new Rendered());
+            }
+        }
+
+        PlaybackStats run() throws IOException, InterruptedException {
+            Thread reader = new Thread(this::read, "anscapes-reader");
+            Thread renderer = new Thread(this::render, "anscapes-renderer");
+            Thread writer = new Thread(this::write, "anscapes-writer");
+            reader.setDaemon(true);
+            renderer.setDaemon(true);
+            writer.setDaemon(true);
+            reader.start();
+            renderer.start();
+            writer.start();
+
+            try {
+                writer.join();
+                renderer.join();
+            } finally {
+                // The reader may be blocked on the source or on a full pipeline
+                reader.interrupt();
+                renderer.interrupt();
+                writer.interrupt();
+            }
+
+            if (failure instanceof IOException)
+                throw (IOException) failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure != null)
+                throw new IllegalStateException(failure);
+
+            return new PlaybackStats(framesRead, framesWritten, framesDropped, bytesWritten, startNanos == 0 ? 0 : System.nanoTime() - startNanos);
+        }
+
+        private void fail(Throwable t) {
+            if (failure == null)
+                failure = t;
+        }
+
+        private void read() {
+            try {
+                for (long index = 0; failure == null; ++index) {
+                    Frame frame = freeFrames.take();
+                    if (!reader.read(frame))
+                        break;
+                    frame.index = index;
+                    ++framesRead;
+                    frames.put(frame);
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                return;
+            }
+            frames.offer(Frame.END);
+        }
+
+        private void render() {
+            try {
+                Frame frame;
+                while ((frame = frames.take()) != Frame.END && failure == null) {
+                    if (startNanos == 0) {
+                        startNanos = System.nanoTime();
+                    } else if (System.nanoTime() - deadline(frame.index) > periodNanos) {
+                        // Too late to be shown, don't even render it
+                        ++framesDropped;
+                        freeFrames.put(frame);
+                        continue;
+                    }
+
+                    Rendered result = freeRendered.take();
+                    result.index = frame.index;
+                    // Pixels are read in place
+                    renderer.renderBytes(frame.buffer, format, width, height, buf -> {
+                        if (result.data.capacity() < buf.remaining())
+                            result.data = ByteBuffer.allocate(buf.remaining());
+                        result.data.clear();
+                        result.data.put(buf);
+                        result.data.flip();
+                    });
+                    freeFrames.put(frame);
+                    rendered.put(result);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+            rendered.offer(Rendered.END);
+        }
+
+        private void write() {
+            try {
+                out.write(CLEAR);
+                Rendered result;
+                while ((result = rendered.take()) != Rendered.END) {
+                    // Pacing
+                    long wait;
+                    while ((wait = deadline(result.index) - System.nanoTime()) > 0)
+                        LockSupport.parkNanos(wait);
+
+                    out.write(HOME);
+                    out.write(result.data.array(), 0, result.data.limit());
+                    out.flush();
+                    ++framesWritten;
+                    bytesWritten += result.data.limit();
+                    freeRendered.put(result);
+                }
+                out.write(Anscapes.RESET.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            } catch (IOException e) {
+                fail(e);
+                // Unblock the renderer
+                freeRendered.offer(new Rendered());
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        private long deadline(long index) {
+            return startNanos + index * periodNanos;
+        }
+    }
+}
@@ -1,6 +1,15 @@
 package tech.guiyom.anscapes;
 
 import org.junit.jupiter.api.Test;
+import tech.guiyom.anscapes.renderer.ImageRenderer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.regex.Matcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class AnscapesTest {
     @Test
@@ -9,4 +18,40 @@ public class AnscapesTest {
         System.out.println(Anscapes.Colors.GREEN_BRIGHT.fg() + Anscapes.Colors.BLUE.bg() + "Some bright green text !" + Anscapes.RESET);
         System.out.println();
     }
+
+    @Test
+    public void testEscape() throws IOException {
+        String frame = ImageRenderer.createRenderer(ColorMode.RGB, 60, 40).renderString(Utils.getSampleImage());
+        // Same output as the previous regex based implementation, frames have no backslashes
+        String expected = frame.replaceAll("\\n", Matcher.quoteReplacement("\\n"))
+                .replaceAll("\\r", Matcher.quoteReplacement("\\r"))
+                .replaceAll("\\033", Matcher.quoteReplacement("\\033"));
+        assertEquals(expected, Anscapes.escape(frame));
+
+        StringWriter writer = new StringWriter();
+        Anscapes.escape(frame, writer);
+        assertEquals(expected, writer.toString());
+        CharBuffer buf = CharBuffer.allocate(expected.length());
+        Anscapes.escape(new StringBuilder(frame), buf);
+        assertEquals(expected, buf.flip().toString());
+
+        assertEquals(frame, Anscapes.unescape(expected));
+        buf.clear();
+        Anscapes.unescape(expected, buf);
+        assertEquals(frame, buf.flip().toString());
+
+        String plain = "Nothing to escape";
+        assertSame(plain, Anscapes.escape(plain));
+        assertSame(plain, Anscapes.unescape(plain));
+    }
+
+    @Test
+    public void testUnescape() {
+        String s = "a\\b\n\r\033[0m\\n\\";
+        assertEquals("a\\\\b\\n\\r\\033[0m\\\\n\\\\", Anscapes.escape(s));
+        assertEquals(s, Anscapes.unescape(Anscapes.escape(s)));
+        assertEquals("\033[m\033", Anscapes.unescape("\\e[m\\033"));
+        // Unknown escapes are kept
+        assertEquals("\\t\\0\\", Anscapes.unescape("\\t\\0\\"));
+    }
 }
@@ -0,0 +1,72 @@
+package tech.guiyom.anscapes;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AnsiWriterTest {
+
+    @Test
+    public void testWrappers() {
+        // Same as the strings built before the writer
+        assertEquals(Anscapes.CSI + "12A", Anscapes.moveUp(12));
+        assertEquals(Anscapes.CSI + "-3B", Anscapes.moveDown(-3));
+        assertEquals(Anscapes.CSI + "1G", Anscapes.moveHorizontal(-5));
+        assertEquals(Anscapes.CSI + "1;300H", Anscapes.cursorPos(0, 300));
+        assertEquals(Anscapes.CSI + "17m", Anscapes.alternativeFont(7));
+        assertEquals(Anscapes.CSI + "=13h", Anscapes.setMode(13));
+        assertEquals(Anscapes.CSI + "=4l", Anscapes.resetMode(4));
+        assertEquals(Anscapes.CSI + "38;2;1;128;255m", Anscapes.rgb(1, 128, 255).fg());
+        assertEquals(Anscapes.CSI + "48;2;0;0;0m", Anscapes.rgb(0).bg());
+        assertEquals(Anscapes.CSI + "38;5;208m", Anscapes.from256code(208).fg());
+        assertEquals(Anscapes.CSI + "48;5;7m", Anscapes.from256code(7).bg());
+        assertThrows(IllegalArgumentException.class, () -> Anscapes.setMode(10));
+        assertThrows(IllegalArgumentException.class, () -> Anscapes.alternativeFont(10));
+    }
+
+    @Test
+    public void testTargets() {
+        AnsiColor custom = new RgbColor(10, 20, 30) {
+            @Override
+            public String fg() {
+                return Anscapes.BOLD;
+            }
+        };
+        Consumer<AnsiWriter> frame = w -> w.append(Anscapes.CURSOR_HIDE)
+                .cursorPos(3, 40).moveRight(1000).moveLeft(2).moveNextLine(1).movePreviousLine(1).eraseChars(80)
+                .fg(Anscapes.Colors.RED_BRIGHT).bg(Anscapes.Colors.BLUE)
+                .fg(Anscapes.from256code(42)).bg(Anscapes.rgb(255, 0, 7)).fg(custom)
+                .sgr(1, 4).fgRgb(0x123456).bg256(255)
+                .text("dashboard \u2580 \ud83d\ude00").reset();
+        String expected = Anscapes.CURSOR_HIDE
+                + Anscapes.cursorPos(3, 40) + Anscapes.moveRight(1000) + Anscapes.moveLeft(2)
+                + Anscapes.moveNextLine(1) + Anscapes.movePreviousLine(1) + Anscapes.eraseChars(80)
+                + Anscapes.Colors.RED_BRIGHT.fg() + Anscapes.Colors.BLUE.bg()
+                + Anscapes.from256code(42).fg() + Anscapes.rgb(255, 0, 7).bg() + Anscapes.BOLD
+                + Anscapes.CSI + "1;4m" + Anscapes.rgb(0x123456).fg() + Anscapes.from256code(255).bg()
+                + "dashboard \u2580 \ud83d\ude00" + Anscapes.RESET;
+
+        StringBuilder sb = new StringBuilder();
+        frame.accept(AnsiWriter.of(sb));
+        assertEquals(expected, sb.toString());
+
+        CharBuffer chars = CharBuffer.allocate(512);
+        AnsiWriter writer = AnsiWriter.of(chars);
+        frame.accept(writer);
+        assertEquals(expected, chars.flip().toString());
+        // Reused after clearing the buffer
+        chars.clear();
+        frame.accept(writer);
+        assertEquals(expected, chars.flip().toString());
+
+        ByteBuffer bytes = ByteBuffer.allocate(512);
+        frame.accept(AnsiWriter.of(bytes));
+        assertEquals(expected, new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,74 @@
+package tech.guiyom.anscapes;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColorQuantizerTest {
+
+    @Test
+    public void testPaletteColors() {
+        ColorQuantizer quantizer = ColorQuantizer.ansi();
+        for (Anscapes.Colors c : Anscapes.Colors.values()) {
+            assertEquals(c.ordinal(), quantizer.nearest(c.color().getRGB()));
+            assertSame(c, Anscapes.findNearestColor(c.color().getRGB()));
+        }
+    }
+
+    @Test
+    public void testCustomPalette() {
+        ColorQuantizer quantizer = new ColorQuantizer(new int[]{ 0x000000, 0xffffff, 0xff0000 });
+        assertEquals(3, quantizer.size());
+        assertEquals(0, quantizer.nearest(0x202020));
+        assertEquals(1, quantizer.nearest(0xd0d0d0));
+        assertEquals(2, quantizer.nearest(0xe01010));
+        assertEquals(0xff0000, quantizer.nearestColor(0xff_e01010));
+    }
+
+    @Test
+    public void testShared() {
+        assertSame(ColorQuantizer.ansi(8), ColorQuantizer.ansi(8));
+    }
+
+    @Test
+    public void testCacheBounded() {
+        ColorQuantizer shared = ColorQuantizer.ansi(8);
+        for (int threshold = 100; threshold < 150; ++threshold)
+            ColorQuantizer.ansi(threshold);
+        // Evicted, built again with the same table
+        ColorQuantizer rebuilt = ColorQuantizer.ansi(8);
+        assertNotSame(shared, rebuilt);
+        for (int rgb = 0; rgb < 0x1000000; rgb += 0x010307)
+            assertEquals(shared.nearest(rgb), rebuilt.nearest(rgb));
+        // The default quantizer is never evicted
+        assertSame(ColorQuantizer.ansi(), ColorQuantizer.ansi(0));
+        assertSame(ColorQuantizer.ansi(), ColorQuantizer.ansi(0, ColorMetric.EUCLIDEAN));
+    }
+
+    @Test
+    public void testMetrics() {
+        for (ColorMetric metric : ColorMetric.values()) {
+            ColorQuantizer quantizer = ColorQuantizer.ansi(0, metric);
+            for (Anscapes.Colors c : Anscapes.Colors.values())
+                assertEquals(c.ordinal(), quantizer.nearest(c.color().getRGB()), metric + " " + c);
+            // Some grays are too close to be told apart by the table, only check the match is the best for the table entry
+            for (int code = 16; code < 256; ++code) {
+                int rgb = Palette256.color(code);
+                int entry = ColorMetric.expand((rgb >> 19) & 0x1f) << 16 | ColorMetric.expand((rgb >> 11) & 0x1f) << 8 | ColorMetric.expand((rgb >> 3) & 0x1f);
+                int match = Palette256.color(Palette256.nearest(rgb, metric));
+                assertTrue(metric.distanceSq(entry, match) <= metric.distanceSq(entry, rgb), metric + " " + code);
+            }
+            assertEquals(0, metric.distanceSq(0x123456, 0x123456));
+            assertEquals(metric.distanceSq(0x102030, 0xa0b0c0), metric.distanceSq(0xa0b0c0, 0x102030));
+        }
+        // Black to white is 100 in CIELAB
+        int deltaE = (int) Math.round(Math.sqrt(ColorMetric.CIELAB.distanceSq(0x000000, 0xffffff) / 16.0));
+        assertEquals(100, deltaE);
+        assertTrue(ColorMetric.CIELAB.distanceSq(0x000000, 0xffffff) > ColorMetric.CIELAB.squared(99));
+        assertNotSame(ColorQuantizer.ansi(8), ColorQuantizer.ansi(8, ColorMetric.REDMEAN));
+        assertSame(ColorQuantizer.ansi(8), ColorQuantizer.ansi(8, ColorMetric.EUCLIDEAN));
+    }
+}
@@ -0,0 +1,62 @@
+package tech.guiyom.anscapes;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PackedColorTest {
+
+    @Test
+    public void testComponents() {
+        int rgb = PackedColor.rgb(18, 52, 86);
+        assertEquals(0x123456, rgb);
+        assertEquals(18, PackedColor.red(rgb));
+        assertEquals(52, PackedColor.green(rgb));
+        assertEquals(86, PackedColor.blue(rgb));
+        assertEquals("#123456", PackedColor.toString(rgb));
+        assertEquals("#000a00", PackedColor.toString(0xff000a00));
+        assertEquals(new RgbColor(18, 52, 86).fg(), PackedColor.fg(rgb));
+        assertEquals(new RgbColor(18, 52, 86).bg(), PackedColor.bg(rgb));
+    }
+
+    @Test
+    public void testBias() {
+        int c1 = 0x102030;
+        int c2 = 0x132030; // 3 apart
+        assertTrue(PackedColor.equals(c1, 0xff000000 | c1, 0));
+        assertFalse(PackedColor.equals(c1, c2, 0));
+        assertFalse(PackedColor.equals(c1, c2, 2));
+        assertTrue(PackedColor.equals(c1, c2, 3));
+        assertTrue(PackedColor.equals(c1, c2, 3, ColorMetric.EUCLIDEAN));
+        // Same answers through the AnsiColor view
+        assertTrue(new RgbColor(c1).diffBiased(new RgbColor(c2), 2));
+        assertFalse(new RgbColor(c1).diffBiased(new RgbColor(c2), 3));
+    }
+
+    @Test
+    public void testViews() {
+        for (Anscapes.Colors c : Anscapes.Colors.values()) {
+            assertEquals(c.color().getRGB() & 0xffffff, c.rgb());
+            assertEquals(c.rgb(), new RgbColor(c.color()).rgb());
+        }
+        Set<AnsiColor> colors = new HashSet<>();
+        colors.add(Anscapes.rgb(1, 2, 3));
+        assertTrue(colors.contains(Anscapes.rgb(0x010203)));
+        assertTrue(colors.contains(Anscapes.rgb(new Color(1, 2, 3))));
+        assertEquals(new Color(1, 2, 3), Anscapes.rgb(0xff010203).color());
+
+        // Colors of other types are only compared by their components
+        assertNotEquals(Anscapes.rgb(0), Anscapes.Colors.BLACK);
+        assertNotEquals(Anscapes.Colors.BLACK, Anscapes.rgb(0));
+        AnsiColor c196 = Anscapes.from256code(196);
+        assertNotEquals(Anscapes.rgb(c196.rgb()), c196);
+        assertTrue(PackedColor.equals(Anscapes.rgb(0).rgb(), Anscapes.Colors.BLACK.rgb(), 0));
+    }
+}
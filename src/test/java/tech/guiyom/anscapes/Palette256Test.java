@@ -0,0 +1,63 @@
+package tech.guiyom.anscapes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class Palette256Test {
+
+    private static int distance(int c1, int c2) {
+        int dr = ((c1 >> 16) & 0xff) - ((c2 >> 16) & 0xff);
+        int dg = ((c1 >> 8) & 0xff) - ((c2 >> 8) & 0xff);
+        int db = (c1 & 0xff) - (c2 & 0xff);
+        return dr * dr + dg * dg + db * db;
+    }
+
+    @Test
+    public void testPaletteColors() {
+        for (int code = 16; code < 256; ++code)
+            assertEquals(Palette256.color(code), Palette256.color(Palette256.nearest(Palette256.color(code))));
+    }
+
+    @Test
+    public void testNearest() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; ++i) {
+            int rgb = random.nextInt() & 0xffffff;
+            int best = Integer.MAX_VALUE;
+            for (int code = 16; code < 256; ++code)
+                best = Math.min(best, distance(rgb, Palette256.color(code)));
+            // Gray matching works on the mean of the components and can be slightly off
+            assertEquals(best, distance(rgb, Palette256.color(Palette256.nearest(rgb))), best / 4 + 32);
+        }
+    }
+
+    @Test
+    public void testFrom256Code() {
+        AnsiColor c = Anscapes.from256code(196);
+        assertEquals(255, c.r());
+        assertEquals(0, c.g());
+        assertEquals(0, c.b());
+        assertEquals(Anscapes.CSI + "38;5;196m", c.fg());
+    }
+
+    @Test
+    public void testFrom256CodeEquality() {
+        // Codes 0 and 16 are both black but are written differently
+        AnsiColor c0 = Anscapes.from256code(0);
+        AnsiColor c16 = Anscapes.from256code(16);
+        assertEquals(c0.rgb(), c16.rgb());
+        assertNotEquals(c0, c16);
+        assertEquals(2, new HashSet<>(Arrays.asList(c0, c16)).size());
+        assertEquals(Anscapes.from256code(16), c16);
+        assertEquals(Anscapes.from256code(16).hashCode(), c16.hashCode());
+
+        AnsiColor c = Anscapes.from256code(196);
+        assertNotEquals(c, Anscapes.rgb(c.rgb()));
+    }
+}
@@ -0,0 +1,62 @@
+package tech.guiyom.anscapes;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SgrEncoderTest {
+
+    private static String flip(CharBuffer buf) {
+        buf.flip();
+        return buf.toString();
+    }
+
+    @Test
+    public void testRgb() {
+        CharBuffer buf = CharBuffer.allocate(64);
+        SgrEncoder.fgRgb(buf, 0xff0a7bff);
+        assertEquals(Anscapes.rgb(10, 123, 255).fg(), flip(buf));
+        buf.clear();
+        SgrEncoder.bgRgb(buf, 0x000000);
+        assertEquals(Anscapes.rgb(0, 0, 0).bg(), flip(buf));
+    }
+
+    @Test
+    public void testInt() {
+        CharBuffer buf = CharBuffer.allocate(64);
+        for (int n : new int[]{ 0, 9, 10, 255, 256, 1000, 65535, Integer.MAX_VALUE }) {
+            buf.clear();
+            SgrEncoder.putInt(buf, n);
+            assertEquals(Integer.toString(n), flip(buf));
+        }
+    }
+
+    @Test
+    public void testAnsi() {
+        CharBuffer buf = CharBuffer.allocate(64);
+        SgrEncoder.sgr(buf, Anscapes.Colors.GREEN_BRIGHT.code());
+        assertEquals(Anscapes.Colors.GREEN_BRIGHT.fg(), flip(buf));
+    }
+
+    @Test
+    public void testMerged() {
+        CharBuffer buf = CharBuffer.allocate(64);
+        SgrEncoder.fgBgRgb(buf, 0x0a7bff, 0xff0000);
+        assertEquals(Anscapes.CSI + "38;2;10;123;255;48;2;255;0;0m", flip(buf));
+        buf.clear();
+        SgrEncoder.fgBg256(buf, 16, 231);
+        assertEquals(Anscapes.CSI + "38;5;16;48;5;231m", flip(buf));
+        buf.clear();
+        SgrEncoder.sgr(buf, 31, 104);
+        assertEquals(Anscapes.CSI + "31;104m", flip(buf));
+
+        ByteBuffer bytes = ByteBuffer.allocate(64);
+        SgrEncoder.fgBgRgb(bytes, 0x0a7bff, 0xff0000);
+        bytes.flip();
+        assertEquals(Anscapes.CSI + "38;2;10;123;255;48;2;255;0;0m", StandardCharsets.US_ASCII.decode(bytes).toString());
+    }
+}
@@ -2,6 +2,7 @@ package tech.guiyom.anscapes.renderer;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import tech.guiyom.anscapes.Anscapes;
 import tech.guiyom.anscapes.ColorMode;
 import tech.guiyom.anscapes.Utils;
 
@@ -10,6 +11,11 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AnsiImageRendererTest {
     @BeforeAll
@@ -52,4 +58,64 @@ public class AnsiImageRendererTest {
                 (double) totalTime / (numRun * 1_000_000),
                 (double) totalTime / (numRun * img.getHeight() * img.getWidth()));
     }
+
+    @Test
+    public void testDithering() throws IOException {
+        AnsiImageRenderer renderer = new AnsiImageRenderer(128, 64);
+        IntUnaryOperator color = i -> Anscapes.Colors.values()[i].color().getRGB();
+        double flat = gradientError(renderer, color);
+        renderer.setDithering(Dithering.ORDERED);
+        double ordered = gradientError(renderer, color);
+        renderer.setDithering(Dithering.FLOYD_STEINBERG);
+        double diffused = gradientError(renderer, color);
+        System.out.printf("Dithering error : none %.2f, ordered %.2f, floyd-steinberg %.2f%n", flat, ordered, diffused);
+        assertTrue(ordered < flat * 3 / 4, ordered + " " + flat);
+        assertTrue(diffused < flat / 2, diffused + " " + flat);
+
+        // Ordered dithering is the same whether rows are rendered in parallel or not
+        renderer.setDithering(Dithering.ORDERED);
+        BufferedImage img = Utils.getSampleImage();
+        String serial = renderer.renderString(img);
+        renderer.setForkJoinPool(new ForkJoinPool(4));
+        assertEquals(serial, renderer.renderString(img));
+
+        try (FileOutputStream out = new FileOutputStream("temp/shield_ansi_dithered.txt")) {
+            out.write(serial.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Quantize a gradient of every hue and brightness, and measure how far the average color of each
+     * 8x8 block is from the original.
+     *
+     * @return the mean distance, per component
+     */
+    static double gradientError(AbstractImageRenderer renderer, IntUnaryOperator color) {
+        int w = renderer.getTargetWidth();
+        int h = renderer.getTargetHeight();
+        int[] pixels = new int[w * h];
+        for (int y = 0; y < h; ++y)
+            for (int x = 0; x < w; ++x)
+                pixels[y * w + x] = java.awt.Color.HSBtoRGB((float) x / w, 0.7f, (float) y / h);
+
+        int[][] colors = new int[h][w];
+        RowSampler scratch = new RowSampler(w);
+        for (int y = 0; y < h; ++y)
+            renderer.quantize(pixels, y * w, y, colors[y], scratch);
+
+        long error = 0;
+        for (int by = 0; by < h; by += 8)
+            for (int bx = 0; bx < w; bx += 8)
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int expected = 0;
+                    int actual = 0;
+                    for (int y = by; y < by + 8; ++y)
+                        for (int x = bx; x < bx + 8; ++x) {
+                            expected += (pixels[y * w + x] >> shift) & 0xff;
+                            actual += (color.applyAsInt(colors[y][x]) >> shift) & 0xff;
+                        }
+                    error += Math.abs(expected - actual);
+                }
+        return (double) error / (w * h * 3);
+    }
 }
@@ -0,0 +1,70 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.junit.jupiter.api.Test;
+import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.Utils;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BitrateControllerTest {
+
+    @Test
+    public void testRgb() {
+        testBudget(new RgbImageRenderer(120, 80), 0.6);
+    }
+
+    @Test
+    public void testAnsi() {
+        testBudget(new AnsiImageRenderer(120, 80), 0.8);
+    }
+
+    @Test
+    public void testDelta() {
+        DeltaImageRenderer delta = new DeltaImageRenderer(new RgbImageRenderer(120, 80));
+        BitrateController controller = new BitrateController(delta, 1000);
+        controller.frameRendered(100_000);
+        assertTrue(delta.bias() > 0);
+    }
+
+    @Test
+    public void testUnsupported() {
+        assertThrows(IllegalArgumentException.class, () -> new BitrateController(new Palette256ImageRenderer(120, 80), 1000));
+    }
+
+    /**
+     * Render a slowly panning image with a budget below the size of frames rendered without any bias.
+     */
+    private static void testBudget(AbstractImageRenderer renderer, double ratio) {
+        BufferedImage img = Utils.getSampleImage();
+        int w = img.getWidth() * 3 / 4;
+        int h = img.getHeight() * 3 / 4;
+        int[] frame = new int[w * h];
+
+        int unbiased = frameLength(renderer, img, frame, w, h, 0);
+        int budget = (int) (unbiased * ratio);
+        BitrateController controller = new BitrateController(renderer, budget);
+
+        long total = 0;
+        for (int i = 0; i < 60; ++i) {
+            int length = frameLength(renderer, img, frame, w, h, i);
+            controller.frameRendered(length);
+            if (i >= 40)
+                total += length;
+        }
+        double average = total / 20.0;
+        assertTrue(renderer.bias() > 0);
+        assertEquals(budget, average, budget * 0.15);
+    }
+
+    private static int frameLength(AbstractImageRenderer renderer, BufferedImage img, int[] frame, int w, int h, int i) {
+        int dx = i % (img.getWidth() - w);
+        img.getRGB(dx, dx / 2, w, h, frame, 0, w);
+        int[] length = new int[1];
+        renderer.renderBytes(frame, w, h, buf -> length[0] = buf.remaining());
+        return length[0];
+    }
+}
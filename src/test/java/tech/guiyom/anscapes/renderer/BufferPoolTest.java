@@ -0,0 +1,111 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.junit.jupiter.api.Test;
+import tech.guiyom.anscapes.ColorMode;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testReuse() {
+        BufferPool pool = new BufferPool(1);
+
+        CharBuffer chars = pool.acquireChars(1000);
+        assertEquals(1024, chars.capacity());
+        chars.put("abc");
+        pool.release(chars);
+        CharBuffer again = pool.acquireChars(700);
+        assertSame(chars, again);
+        assertEquals(0, again.position());
+        // Only 1 retained
+        pool.release(again);
+        pool.release(CharBuffer.allocate(1024));
+        assertSame(chars, pool.acquireChars(1024));
+        assertNotSame(chars, pool.acquireChars(1024));
+
+        ByteBuffer bytes = pool.acquireBytes(1025);
+        assertEquals(2048, bytes.capacity());
+        pool.release(bytes);
+        assertNotSame(bytes, pool.acquireBytes(4000));
+        assertSame(bytes, pool.acquireBytes(2000));
+    }
+
+    @Test
+    public void testForeignBuffers() {
+        BufferPool pool = new BufferPool(4);
+        pool.release(ByteBuffer.allocateDirect(1024));
+        pool.release(ByteBuffer.allocate(1024).asReadOnlyBuffer());
+        pool.release(ByteBuffer.allocate(2048).position(1024).slice());
+        pool.release(ByteBuffer.allocate(1000));
+        pool.release(CharBuffer.wrap(new char[2048], 1024, 1024).slice());
+        pool.release(CharBuffer.allocate(1000));
+
+        // None of them was retained
+        ByteBuffer bytes = pool.acquireBytes(1024);
+        assertTrue(bytes.hasArray());
+        assertEquals(0, bytes.arrayOffset());
+        assertEquals(1024, bytes.array().length);
+        CharBuffer chars = pool.acquireChars(1024);
+        assertEquals(0, chars.arrayOffset());
+        assertEquals(1024, chars.array().length);
+    }
+
+    @Test
+    public void testLineBound() {
+        int[] noise = new int[160 * 120];
+        Random random = new Random(42);
+        for (int i = 0; i < noise.length; ++i)
+            noise[i] = 0xff000000 | random.nextInt();
+
+        // Noise changes both colors of most cells
+        for (ColorMode cmode : ColorMode.values())
+            for (Blocks blocks : Blocks.values()) {
+                AbstractImageRenderer renderer = (AbstractImageRenderer) ImageRenderer.createRenderer(cmode, 160, 120);
+                renderer.setBlocks(blocks);
+                int bound = renderer.maxLineLength(blocks.cells(160));
+                String sep = System.lineSeparator();
+                String[] lines = renderer.renderString(noise, 160, 120).split(sep);
+                assertEquals(blocks.lines(120), lines.length);
+                int longest = 0;
+                for (String line : lines)
+                    longest = Math.max(longest, (line + sep).getBytes(StandardCharsets.UTF_8).length);
+                assertTrue(longest <= bound, cmode + " " + blocks + " " + longest + " > " + bound);
+                assertTrue(longest > bound / 2, cmode + " " + blocks + " " + longest + " <= " + bound + " / 2");
+            }
+    }
+
+    @Test
+    public void testGrowing() {
+        int[] noise = new int[160 * 120];
+        Random random = new Random(42);
+        for (int i = 0; i < noise.length; ++i)
+            noise[i] = 0xff000000 | random.nextInt();
+        int[] flat = new int[160 * 120];
+
+        // Frames longer than the previous ones are rendered again to a larger buffer
+        AbstractImageRenderer renderer = new RgbImageRenderer(160, 120);
+        renderer.setBufferPool(new BufferPool(1));
+        String first = renderer.renderString(flat, 160, 120);
+        String second = renderer.renderString(noise, 160, 120);
+
+        assertEquals(new RgbImageRenderer(160, 120).renderString(flat, 160, 120), first);
+        assertEquals(new RgbImageRenderer(160, 120).renderString(noise, 160, 120), second);
+
+        for (ColorMode cmode : ColorMode.values()) {
+            AbstractImageRenderer parallel = (AbstractImageRenderer) ImageRenderer.createRenderer(cmode, 160, 120);
+            parallel.setForkJoinPool(new ForkJoinPool(2));
+            parallel.renderString(flat, 160, 120);
+            assertEquals(ImageRenderer.createRenderer(cmode, 160, 120).renderString(noise, 160, 120), parallel.renderString(noise, 160, 120));
+        }
+    }
+}
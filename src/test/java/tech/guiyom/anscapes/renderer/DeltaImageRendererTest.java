@@ -0,0 +1,152 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import tech.guiyom.anscapes.ColorMetric;
+import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.Utils;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeltaImageRendererTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 61;
+
+    @ParameterizedTest
+    @EnumSource(ColorMode.class)
+    public void testDelta(final ColorMode cmode) {
+
+        BufferedImage img = Utils.getSampleImage();
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int[] frame1 = img.getRGB(0, 0, w, h, null, 0, w);
+        // Paint a rectangle over the image
+        int[] frame2 = frame1.clone();
+        for (int y = h / 4; y < h / 2; ++y)
+            Arrays.fill(frame2, y * w + w / 3, y * w + w / 2, 0xff20c040);
+
+        DeltaImageRenderer delta = new DeltaImageRenderer((AbstractImageRenderer) ImageRenderer.createRenderer(cmode, WIDTH, HEIGHT));
+        TerminalEmulator term = new TerminalEmulator(WIDTH, (HEIGHT + 1) / 2 + 1);
+
+        String first = delta.renderString(frame1, w, h);
+        String same = delta.renderString(frame1, w, h);
+        String second = delta.renderString(frame2, w, h);
+        term.write(first).write(same).write(second);
+
+        String full = ImageRenderer.createRenderer(cmode, WIDTH, HEIGHT).renderString(frame2, w, h);
+        TerminalEmulator expected = new TerminalEmulator(WIDTH, (HEIGHT + 1) / 2 + 1).write(full);
+
+        assertEquals(expected.dump(), term.dump());
+        assertEquals((HEIGHT + 1) / 2, term.getRow());
+        assertEquals(0, term.getCol());
+        assertTrue(same.length() < 16);
+        assertTrue(second.length() < full.length() / 2);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Blocks.class, names = { "QUADRANT", "SEXTANT" })
+    public void testBlocks(final Blocks blocks) {
+
+        BufferedImage img = Utils.getSampleImage();
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int[] frame1 = img.getRGB(0, 0, w, h, null, 0, w);
+        int[] frame2 = frame1.clone();
+        for (int y = h / 4; y < h / 2; ++y)
+            Arrays.fill(frame2, y * w + w / 3, y * w + w / 2, 0xff20c040);
+
+        AbstractImageRenderer renderer = (AbstractImageRenderer) ImageRenderer.createRenderer(ColorMode.PALETTE_256, WIDTH, HEIGHT);
+        renderer.setBlocks(blocks);
+        renderer.setEraseRuns(true);
+        DeltaImageRenderer delta = new DeltaImageRenderer(renderer);
+        int cells = blocks.cells(WIDTH);
+        int lines = blocks.lines(HEIGHT);
+        TerminalEmulator term = new TerminalEmulator(cells, lines + 1);
+
+        String first = delta.renderString(frame1, w, h);
+        String second = delta.renderString(frame2, w, h);
+        term.write(first).write(second);
+
+        String full = renderer.renderString(frame2, w, h);
+        TerminalEmulator expected = new TerminalEmulator(cells, lines + 1).write(full);
+
+        assertEquals(expected.dump(blocks), term.dump(blocks));
+        assertEquals(lines, term.getRow());
+        assertEquals(0, term.getCol());
+        assertTrue(second.length() < full.length() / 2);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ColorMode.class)
+    public void testEraseRuns(final ColorMode cmode) {
+
+        int[] frame1 = RgbImageRendererTest.letterboxed(WIDTH, HEIGHT);
+        // Flat rectangles over the image and over the bars
+        int[] frame2 = frame1.clone();
+        for (int y = HEIGHT / 3; y < HEIGHT / 2; ++y)
+            Arrays.fill(frame2, y * WIDTH + 5, y * WIDTH + WIDTH * 2 / 3, 0xff20c040);
+        for (int y = 0; y < 6; ++y)
+            Arrays.fill(frame2, y * WIDTH, y * WIDTH + WIDTH, 0xffffffff);
+
+        AbstractImageRenderer renderer = (AbstractImageRenderer) ImageRenderer.createRenderer(cmode, WIDTH, HEIGHT);
+        renderer.setEraseRuns(true);
+        DeltaImageRenderer delta = new DeltaImageRenderer(renderer);
+        TerminalEmulator term = new TerminalEmulator(WIDTH, (HEIGHT + 1) / 2 + 1);
+        String first = delta.renderString(frame1, WIDTH, HEIGHT);
+        String second = delta.renderString(frame2, WIDTH, HEIGHT);
+        term.write(first).write(second);
+
+        String full = ImageRenderer.createRenderer(cmode, WIDTH, HEIGHT).renderString(frame2, WIDTH, HEIGHT);
+        TerminalEmulator expected = new TerminalEmulator(WIDTH, (HEIGHT + 1) / 2 + 1).write(full);
+
+        assertEquals(expected.dump(), term.dump());
+        assertEquals((HEIGHT + 1) / 2, term.getRow());
+        assertEquals(0, term.getCol());
+    }
+
+    @Test
+    public void testBias() {
+
+        int width = 24;
+        int height = 8;
+        int bias = 30;
+        RgbImageRenderer renderer = new RgbImageRenderer(width, height, bias, ColorMetric.EUCLIDEAN);
+        renderer.setEraseRuns(false);
+        DeltaImageRenderer delta = new DeltaImageRenderer(renderer);
+        TerminalEmulator term = new TerminalEmulator(width, height / 2 + 1);
+
+        // Colors drifting by less than the bias every frame, kept or not depending on their neighbours
+        Random random = new Random(42);
+        int[] frame = new int[width * height];
+        Arrays.fill(frame, 0xff808080);
+        for (int i = 0; i < 60; ++i) {
+            for (int p = 0; p < frame.length; ++p) {
+                int c = frame[p];
+                int r = Math.max(0, Math.min(255, (c >> 16 & 0xff) + random.nextInt(21) - 10));
+                int g = Math.max(0, Math.min(255, (c >> 8 & 0xff) + random.nextInt(21) - 10));
+                int b = Math.max(0, Math.min(255, (c & 0xff) + random.nextInt(21) - 10));
+                frame[p] = 0xff000000 | r << 16 | g << 8 | b;
+            }
+            term.write(delta.renderString(frame, width, height));
+
+            // Like a full render : a cell of a single color shows a color within the bias of its upper pixel,
+            // which is itself within the bias of the lower one
+            for (int y = 0; y < height; ++y)
+                for (int x = 0; x < width; ++x) {
+                    String shown = y % 2 == 0 ? term.upper(y / 2, x) : term.lower(y / 2, x);
+                    String[] rgb = shown.substring(3).split(",");
+                    int color = Integer.parseInt(rgb[0]) << 16 | Integer.parseInt(rgb[1]) << 8 | Integer.parseInt(rgb[2]);
+                    int max = y % 2 == 0 ? bias : 2 * bias;
+                    assertTrue(ColorMetric.EUCLIDEAN.distanceSq(color, frame[y * width + x] & 0xffffff) <= max * max,
+                            "Frame " + i + ", pixel " + x + "," + y + " : " + shown);
+                }
+        }
+    }
+}
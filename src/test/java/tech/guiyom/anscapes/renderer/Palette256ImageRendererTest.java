@@ -0,0 +1,44 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.Palette256;
+import tech.guiyom.anscapes.Utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Palette256ImageRendererTest {
+    @BeforeAll
+    public static void setup() {
+        new File("temp").mkdir();
+    }
+
+    @Test
+    public void test256Colors() throws IOException {
+
+        ImageRenderer converter = ImageRenderer.createRenderer(ColorMode.PALETTE_256, 360, 360);
+
+        FileOutputStream out = new FileOutputStream("temp/shield_256.txt");
+        String result = converter.renderString(Utils.getSampleImage());
+        out.write(result.getBytes(StandardCharsets.UTF_8));
+        out.close();
+    }
+
+    @Test
+    public void testDithering() {
+        Palette256ImageRenderer renderer = new Palette256ImageRenderer(128, 64);
+        double flat = AnsiImageRendererTest.gradientError(renderer, Palette256::color);
+        renderer.setDithering(Dithering.ORDERED);
+        double ordered = AnsiImageRendererTest.gradientError(renderer, Palette256::color);
+        renderer.setDithering(Dithering.FLOYD_STEINBERG);
+        double diffused = AnsiImageRendererTest.gradientError(renderer, Palette256::color);
+        assertTrue(ordered < flat * 3 / 4, ordered + " " + flat);
+        assertTrue(diffused < flat / 2, diffused + " " + flat);
+    }
+}
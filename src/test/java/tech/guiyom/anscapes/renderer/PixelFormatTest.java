@@ -0,0 +1,166 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.Utils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PixelFormatTest {
+
+    private static ByteBuffer encode(int[] pixels, PixelFormat format) {
+        // Offset the pixels to check that the buffer position is honored
+        ByteBuffer buf = ByteBuffer.allocateDirect(7 + pixels.length * format.bytesPerPixel());
+        buf.position(7);
+        for (int p : pixels) {
+            byte a = (byte) (p >>> 24), r = (byte) (p >> 16), g = (byte) (p >> 8), b = (byte) p;
+            switch (format) {
+                case RGB24:
+                    buf.put(r).put(g).put(b);
+                    break;
+                case RGBA:
+                    buf.put(r).put(g).put(b).put(a);
+                    break;
+                case BGRA:
+                    buf.put(b).put(g).put(r).put(a);
+                    break;
+                case ARGB:
+                    buf.put(a).put(r).put(g).put(b);
+                    break;
+            }
+        }
+        buf.position(7);
+        return buf;
+    }
+
+    @ParameterizedTest
+    @EnumSource(PixelFormat.class)
+    public void testDirectBuffer(final PixelFormat format) {
+
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        if (format == PixelFormat.RGB24) {
+            for (int i = 0; i < data.length; ++i)
+                data[i] |= 0xff000000;
+        }
+        ByteBuffer buf = encode(data, format);
+
+        ImageRenderer renderer = new RgbImageRenderer(120, 80);
+        String expected = renderer.renderString(data, img.getWidth(), img.getHeight());
+        String[] result = new String[1];
+        renderer.render(buf, format, img.getWidth(), img.getHeight(), (chars, len) -> result[0] = new String(chars, 0, len));
+
+        assertEquals(expected, result[0]);
+        assertEquals(7, buf.position());
+    }
+
+    @Test
+    public void testDirectIntBuffer() {
+
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        IntBuffer buf = ByteBuffer.allocateDirect(data.length * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        buf.put(data).flip();
+
+        ImageRenderer renderer = new AnsiImageRenderer(img.getWidth(), img.getHeight());
+        String expected = renderer.renderString(data, img.getWidth(), img.getHeight());
+        String[] result = new String[1];
+        renderer.render(buf, img.getWidth(), img.getHeight(), (chars, len) -> result[0] = new String(chars, 0, len));
+
+        assertEquals(expected, result[0]);
+    }
+
+    @ParameterizedTest
+    @EnumSource(PixelFormat.class)
+    public void testDefaultMethods(final PixelFormat format) throws IOException {
+
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        if (format == PixelFormat.RGB24) {
+            for (int i = 0; i < data.length; ++i)
+                data[i] |= 0xff000000;
+        }
+        ByteBuffer buf = encode(data, format);
+
+        ImageRenderer renderer = new Wrapper(new RgbImageRenderer(120, 80));
+        String expected = renderer.renderString(data, img.getWidth(), img.getHeight());
+        String[] result = new String[1];
+        renderer.render(buf, format, img.getWidth(), img.getHeight(), (chars, len) -> result[0] = new String(chars, 0, len));
+        assertEquals(expected, result[0]);
+
+        renderer.renderBytes(buf, format, img.getWidth(), img.getHeight(), bytes -> result[0] = StandardCharsets.UTF_8.decode(bytes).toString());
+        assertEquals(expected, result[0]);
+        assertEquals(7, buf.position());
+
+        IntBuffer ints = IntBuffer.wrap(data);
+        renderer.renderBytes(ints, img.getWidth(), img.getHeight(), bytes -> result[0] = StandardCharsets.UTF_8.decode(bytes).toString());
+        assertEquals(expected, result[0]);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.render(data, img.getWidth(), img.getHeight(), out);
+        assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Implements only the methods without a default.
+     */
+    private static final class Wrapper implements ImageRenderer {
+
+        private final ImageRenderer renderer;
+
+        Wrapper(ImageRenderer renderer) {
+            this.renderer = renderer;
+        }
+
+        @Override
+        public ColorMode getColorMode() {
+            return renderer.getColorMode();
+        }
+
+        @Override
+        public void render(int[] data, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
+            renderer.render(data, originalWidth, originalHeight, resultConsumer);
+        }
+
+        @Override
+        public void render(ByteBuffer buf, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
+            renderer.render(buf, originalWidth, originalHeight, resultConsumer);
+        }
+
+        @Override
+        public void render(IntBuffer buf, int originalWidth, int originalHeight, BiConsumer<char[], Integer> resultConsumer) {
+            renderer.render(buf, originalWidth, originalHeight, resultConsumer);
+        }
+
+        @Override
+        public String renderString(int[] data, int originalWidth, int originalHeight) {
+            return renderer.renderString(data, originalWidth, originalHeight);
+        }
+
+        @Override
+        public String renderString(BufferedImage image) {
+            return renderer.renderString(image);
+        }
+
+        @Override
+        public TerminalImage render(int[] data, int originalWidth, int originalHeight) {
+            return renderer.render(data, originalWidth, originalHeight);
+        }
+
+        @Override
+        public TerminalImage render(BufferedImage image) {
+            return renderer.render(image);
+        }
+    }
+}
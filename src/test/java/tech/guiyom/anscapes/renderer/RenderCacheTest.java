@@ -0,0 +1,106 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.junit.jupiter.api.Test;
+import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.Utils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RenderCacheTest {
+
+    @Test
+    public void testHits() {
+        RenderCache cache = new RenderCache(64 << 20);
+        BufferedImage img = Utils.getSampleImage();
+
+        TerminalImage first = cache.render(new RgbImageRenderer(80, 60, 8), img);
+        // Another renderer with the same settings
+        TerminalImage second = cache.render(new RgbImageRenderer(80, 60, 8), img);
+        assertSame(first, second);
+        assertEquals(new RgbImageRenderer(80, 60, 8).render(img).getSequence(), first.getSequence());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // Any other setting is another entry
+        assertNotSame(first, cache.render(new RgbImageRenderer(80, 60, 0), img));
+        assertNotSame(first, cache.render(new RgbImageRenderer(80, 62, 8), img));
+        assertNotSame(first, cache.render(new AnsiImageRenderer(80, 60, 8), img));
+        AbstractImageRenderer average = new RgbImageRenderer(80, 60, 8);
+        average.setScaling(Scaling.AREA_AVERAGE);
+        assertNotSame(first, cache.render(average, img));
+        assertEquals(5, cache.getMissCount());
+
+        // Same pixels, other content
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        TerminalImage fromArray = cache.render(new RgbImageRenderer(80, 60, 8), data, img.getWidth(), img.getHeight());
+        assertEquals(first.getSequence(), fromArray.getSequence());
+        data[1234] ^= 0x010000;
+        assertNotSame(fromArray, cache.render(new RgbImageRenderer(80, 60, 8), data, img.getWidth(), img.getHeight()));
+        assertEquals(7, cache.getMissCount());
+
+        assertThrows(IllegalArgumentException.class, () -> cache.render(new DeltaImageRenderer(new RgbImageRenderer(80, 60)), img));
+    }
+
+    @Test
+    public void testEviction() {
+        int[] data = new int[64 * 64];
+        ImageRenderer renderer = ImageRenderer.createRenderer(ColorMode.RGB, 32, 32);
+        long entrySize = 2L * renderer.render(data, 64, 64).getSequence().length() + 128;
+
+        // Room for 3 entries, the pixel changed isn't sampled so all the entries have the same size
+        RenderCache cache = new RenderCache(3 * entrySize + 1, 1);
+        for (int i = 0; i < 3; ++i) {
+            data[1] = i;
+            cache.render(renderer, data, 64, 64);
+        }
+        assertEquals(3 * entrySize, cache.getSize());
+        // Use the first one, then add another one
+        data[1] = 0;
+        cache.render(renderer, data, 64, 64);
+        data[1] = 3;
+        cache.render(renderer, data, 64, 64);
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3 * entrySize, cache.getSize());
+
+        // The second one was the least recently used
+        data[1] = 0;
+        cache.render(renderer, data, 64, 64);
+        data[1] = 1;
+        cache.render(renderer, data, 64, 64);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(5, cache.getMissCount());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException, ExecutionException {
+        RenderCache cache = new RenderCache(64 << 20);
+        ImageRenderer renderer = ImageRenderer.createRenderer(ColorMode.PALETTE_256, 60, 40);
+        BufferedImage img = Utils.getSampleImage();
+        String expected = renderer.render(img).getSequence();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; ++i)
+                results.add(executor.submit(() -> cache.render(renderer, img).getSequence()));
+            for (Future<String> result : results)
+                assertEquals(expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(100, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getHitCount() >= 96);
+    }
+}
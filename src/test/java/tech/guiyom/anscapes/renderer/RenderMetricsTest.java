@@ -0,0 +1,176 @@
+package tech.guiyom.anscapes.renderer;
+
+import org.junit.jupiter.api.Test;
+import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.Utils;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RenderMetricsTest {
+
+    private static final int WIDTH = 80;
+    private static final int HEIGHT = 60;
+
+    @Test
+    public void testFrame() {
+        BufferedImage img = Utils.getSampleImage();
+        AbstractImageRenderer renderer = new RgbImageRenderer(WIDTH, HEIGHT);
+        Copy frame = new Copy();
+        renderer.setRenderMetrics(frame);
+
+        String result = renderer.renderString(img);
+        assertEquals(result.length(), frame.length);
+        // Both colors can be selected by a single sequence
+        assertEquals(count(result, 38), frame.fgEscapes);
+        assertEquals(count(result, 48), frame.bgEscapes);
+        assertEquals((long) WIDTH * HEIGHT, frame.pixelsResized);
+        assertEquals(0, frame.cellsReused);
+        assertTrue(frame.resizeNanos > 0);
+        assertTrue(frame.quantizeNanos > 0);
+        assertTrue(frame.encodeNanos > 0);
+        assertTrue(frame.totalNanos >= frame.resizeNanos + frame.quantizeNanos + frame.encodeNanos);
+
+        // Read in place
+        int[] pixels = new int[WIDTH * HEIGHT];
+        AbstractImageRenderer.resize(img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth()),
+                img.getWidth(), img.getHeight(), pixels, WIDTH, HEIGHT);
+        int[] length = new int[1];
+        renderer.renderBytes(pixels, WIDTH, HEIGHT, buf -> length[0] = buf.remaining());
+        assertEquals(length[0], frame.length);
+        assertEquals(0, frame.pixelsResized);
+        assertEquals(0, frame.resizeNanos);
+
+        renderer.setRenderMetrics(null);
+        renderer.renderString(img);
+        assertEquals(length[0], frame.length);
+    }
+
+    @Test
+    public void testParallel() {
+        BufferedImage img = Utils.getSampleImage();
+        AbstractImageRenderer serial = new RgbImageRenderer(WIDTH, HEIGHT);
+        serial.setBlocks(Blocks.QUADRANT);
+        Copy expected = new Copy();
+        serial.setRenderMetrics(expected);
+        serial.renderString(img);
+
+        AbstractImageRenderer parallel = new RgbImageRenderer(WIDTH, HEIGHT);
+        parallel.setBlocks(Blocks.QUADRANT);
+        parallel.setForkJoinPool(new ForkJoinPool(4));
+        Copy frame = new Copy();
+        parallel.setRenderMetrics(frame);
+        parallel.renderString(img);
+
+        assertEquals(expected.length, frame.length);
+        assertEquals(expected.fgEscapes, frame.fgEscapes);
+        assertEquals(expected.bgEscapes, frame.bgEscapes);
+        assertEquals(expected.pixelsResized, frame.pixelsResized);
+    }
+
+    @Test
+    public void testDelta() {
+        BufferedImage img = Utils.getSampleImage();
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int[] frame1 = img.getRGB(0, 0, w, h, null, 0, w);
+        int[] frame2 = frame1.clone();
+        for (int y = 0; y < h / 4; ++y)
+            Arrays.fill(frame2, y * w, y * w + w / 4, 0xff20c040);
+
+        DeltaImageRenderer delta = new DeltaImageRenderer((AbstractImageRenderer) ImageRenderer.createRenderer(ColorMode.PALETTE_256, WIDTH, HEIGHT));
+        Copy frame = new Copy();
+        delta.setRenderMetrics(frame);
+
+        delta.renderString(frame1, w, h);
+        assertEquals(0, frame.cellsReused);
+        String second = delta.renderString(frame2, w, h);
+        assertEquals(second.length(), frame.length);
+        int cells = WIDTH * HEIGHT / 2;
+        assertTrue(frame.cellsReused > cells / 2);
+        assertTrue(frame.cellsReused < cells);
+    }
+
+    @Test
+    public void testCounters() {
+        BufferedImage img = Utils.getSampleImage();
+        AbstractImageRenderer renderer = new AnsiImageRenderer(WIDTH, HEIGHT);
+        RenderMetrics.Counters counters = new RenderMetrics.Counters();
+        renderer.setRenderMetrics(counters);
+        assertSame(counters, renderer.getRenderMetrics());
+
+        long length = 0;
+        for (int i = 0; i < 3; ++i)
+            length += renderer.renderString(img).length();
+
+        assertEquals(3, counters.getFrameCount());
+        assertEquals(length, counters.getLength());
+        assertEquals(3L * WIDTH * HEIGHT, counters.getPixelsResized());
+        assertTrue(counters.getFgEscapes() > 0);
+        assertTrue(counters.getBgEscapes() > 0);
+        assertTrue(counters.getTotalNanos() > 0);
+
+        renderer.setRenderMetrics(null);
+        assertNull(renderer.getRenderMetrics());
+    }
+
+    /**
+     * @return the number of 24 bit colors selected by a parameter, 38 or 48, in the SGR sequences
+     */
+    private static int count(String s, int parameter) {
+        int count = 0;
+        for (int start = s.indexOf("\u001b["); start >= 0; start = s.indexOf("\u001b[", start + 1)) {
+            int end = start + 2;
+            while (end < s.length() && (Character.isDigit(s.charAt(end)) || s.charAt(end) == ';'))
+                ++end;
+            if (end == s.length() || s.charAt(end) != 'm' || end == start + 2)
+                continue;
+            String[] parameters = s.substring(start + 2, end).split(";");
+            for (int i = 0; i < parameters.length; ++i) {
+                int p = Integer.parseInt(parameters[i]);
+                if (p == 38 || p == 48) {
+                    if (p == parameter)
+                        ++count;
+                    // 2;r;g;b
+                    i += 4;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Keeps the measures of the last frame, frames are reused by renderers.
+     */
+    private static final class Copy implements RenderMetrics {
+
+        long resizeNanos;
+        long quantizeNanos;
+        long encodeNanos;
+        long totalNanos;
+        int length;
+        int fgEscapes;
+        int bgEscapes;
+        int cellsReused;
+        long pixelsResized;
+
+        @Override
+        public void frameRendered(Frame frame) {
+            resizeNanos = frame.getResizeNanos();
+            quantizeNanos = frame.getQuantizeNanos();
+            encodeNanos = frame.getEncodeNanos();
+            totalNanos = frame.getTotalNanos();
+            length = frame.getLength();
+            fgEscapes = frame.getFgEscapes();
+            bgEscapes = frame.getBgEscapes();
+            cellsReused = frame.getCellsReused();
+            pixelsResized = frame.getPixelsResized();
+        }
+    }
+}
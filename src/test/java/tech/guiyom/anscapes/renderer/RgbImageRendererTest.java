@@ -2,14 +2,29 @@ package tech.guiyom.anscapes.renderer;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import tech.guiyom.anscapes.ColorMode;
 import tech.guiyom.anscapes.Utils;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RgbImageRendererTest {
     @BeforeAll
@@ -29,6 +44,189 @@ public class RgbImageRendererTest {
         out.close();
     }
 
+    @ParameterizedTest
+    @EnumSource(ColorMode.class)
+    public void testBytes(final ColorMode cmode) throws IOException {
+
+        ImageRenderer converter = ImageRenderer.createRenderer(cmode, 120, 91);
+
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+
+        byte[] expected = converter.renderString(data, img.getWidth(), img.getHeight()).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        converter.render(data, img.getWidth(), img.getHeight(), out);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ColorMode.class)
+    public void testParallel(final ColorMode cmode) {
+
+        AbstractImageRenderer serial = (AbstractImageRenderer) ImageRenderer.createRenderer(cmode, 401, 201);
+        AbstractImageRenderer parallel = (AbstractImageRenderer) ImageRenderer.createRenderer(cmode, 401, 201);
+        parallel.setForkJoinPool(ForkJoinPool.commonPool());
+
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+
+        assertEquals(serial.renderString(data, img.getWidth(), img.getHeight()), parallel.renderString(data, img.getWidth(), img.getHeight()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ColorMode.class)
+    public void testShared(final ColorMode cmode) throws InterruptedException, ExecutionException {
+
+        ImageRenderer shared = ImageRenderer.createRenderer(cmode, 120, 80);
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        // Different sizes so threads also race on the sampling tables
+        int[] half = new int[180 * 180];
+        AbstractImageRenderer.resize(data, img.getWidth(), img.getHeight(), half, 180, 180);
+        String expected = ImageRenderer.createRenderer(cmode, 120, 80).renderString(data, img.getWidth(), img.getHeight());
+        String expectedHalf = ImageRenderer.createRenderer(cmode, 120, 80).renderString(half, 180, 180);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 64; ++i) {
+                boolean even = i % 2 == 0;
+                results.add(executor.submit(() -> even
+                        ? expected.equals(shared.renderString(data, img.getWidth(), img.getHeight()))
+                        : expectedHalf.equals(shared.renderString(half, 180, 180))));
+            }
+            for (Future<Boolean> result : results)
+                assertTrue(result.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ColorMode.class)
+    public void testDisplayed(final ColorMode cmode) {
+
+        final int width = 97;
+        final int height = 61;
+        AbstractImageRenderer renderer = (AbstractImageRenderer) ImageRenderer.createRenderer(cmode, width, height);
+
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        int[] pixels = new int[width * (height + 1)];
+        AbstractImageRenderer.resize(data, img.getWidth(), img.getHeight(), pixels, width, height);
+
+        TerminalEmulator term = new TerminalEmulator(width, (height + 1) / 2 + 1)
+                .write(renderer.renderString(data, img.getWidth(), img.getHeight()));
+
+        // Glyphs and sequences may change, what is displayed must not
+        int[] colors = new int[width];
+        for (int y = 0; y < height + 1; ++y) {
+            renderer.quantize(pixels, y * width, y, colors);
+            for (int x = 0; x < width; ++x) {
+                String displayed = y % 2 == 0 ? term.upper(y / 2, x) : term.lower(y / 2, x);
+                assertEquals(colorName(cmode, colors[x]), displayed, "at " + x + "," + y);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ColorMode.class)
+    public void testEraseRuns(final ColorMode cmode) {
+
+        final int width = 160;
+        final int height = 90;
+        int[] letterboxed = letterboxed(width, height);
+
+        AbstractImageRenderer renderer = (AbstractImageRenderer) ImageRenderer.createRenderer(cmode, width, height);
+        String cells = renderer.renderString(letterboxed, width, height);
+        renderer.setEraseRuns(true);
+        String erased = renderer.renderString(letterboxed, width, height);
+
+        TerminalEmulator expected = new TerminalEmulator(width, (height + 1) / 2 + 1).write(cells);
+        TerminalEmulator actual = new TerminalEmulator(width, (height + 1) / 2 + 1).write(erased);
+        assertEquals(expected.dump(), actual.dump());
+        assertTrue(erased.length() < cells.length() * 4 / 5, erased.length() + " " + cells.length());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Blocks.class, names = { "QUADRANT", "SEXTANT" })
+    public void testBlocks(final Blocks blocks) {
+
+        // Same number of cells for both renderers
+        final int cells = 80;
+        final int lines = 40;
+        final int width = cells * blocks.columns();
+        final int height = lines * blocks.rows();
+
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        int[] pixels = new int[width * height];
+        AbstractImageRenderer.resize(data, img.getWidth(), img.getHeight(), pixels, width, height);
+
+        RgbImageRenderer renderer = new RgbImageRenderer(width, height);
+        renderer.setBlocks(blocks);
+        String seq = renderer.renderString(data, img.getWidth(), img.getHeight());
+        TerminalEmulator term = new TerminalEmulator(cells, lines + 1).write(seq);
+        String halfSeq = new RgbImageRenderer(cells, 2 * lines).renderString(data, img.getWidth(), img.getHeight());
+        TerminalEmulator half = new TerminalEmulator(cells, lines + 1).write(halfSeq);
+
+        // Squared error of the displayed pixels against the image at the resolution of the blocks
+        long error = 0;
+        long halfError = 0;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                int line = y / blocks.rows();
+                int cell = x / blocks.columns();
+                int index = (y % blocks.rows()) * blocks.columns() + x % blocks.columns();
+                int pixel = pixels[y * width + x];
+                error += distanceSq(rgb(term.pixel(line, cell, blocks, index)), pixel);
+                halfError += distanceSq(rgb(half.pixel(line, cell, Blocks.HALF, (y % blocks.rows()) * 2 / blocks.rows())), pixel);
+            }
+        }
+        System.out.printf("%s : error %d (half blocks %d), %d chars (half blocks %d)%n", blocks, error, halfError, seq.length(), halfSeq.length());
+        assertTrue(error < halfError * 2 / 3);
+        assertTrue(seq.length() < halfSeq.length() * 3 / 2);
+    }
+
+    private static int rgb(String colorName) {
+        String[] c = colorName.substring(3).split(",");
+        return Integer.parseInt(c[0]) << 16 | Integer.parseInt(c[1]) << 8 | Integer.parseInt(c[2]);
+    }
+
+    private static long distanceSq(int rgb1, int rgb2) {
+        int dr = ((rgb1 >> 16) & 0xff) - ((rgb2 >> 16) & 0xff);
+        int dg = ((rgb1 >> 8) & 0xff) - ((rgb2 >> 8) & 0xff);
+        int db = (rgb1 & 0xff) - (rgb2 & 0xff);
+        return dr * dr + dg * dg + db * db;
+    }
+
+    /**
+     * @return the sample image in the middle of black bars, at the given size
+     */
+    static int[] letterboxed(int width, int height) {
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        int size = height / 2;
+        int[] small = new int[size * size];
+        AbstractImageRenderer.resize(data, img.getWidth(), img.getHeight(), small, size, size);
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 0xff000000);
+        for (int y = 0; y < size; ++y)
+            System.arraycopy(small, y * size, pixels, (y + height / 4) * width + (width - size) / 2, size);
+        return pixels;
+    }
+
+    private static String colorName(ColorMode cmode, int color) {
+        switch (cmode) {
+            case ANSI:
+                return "ansi" + color;
+            case PALETTE_256:
+                return "256:" + color;
+            default:
+                return "rgb" + ((color >> 16) & 0xff) + ',' + ((color >> 8) & 0xff) + ',' + (color & 0xff);
+        }
+    }
+
     @ParameterizedTest
     @ValueSource(ints = { 0, 2, 4, 8, 16, 32 })
     public void testRgbVideo(final int bias) {
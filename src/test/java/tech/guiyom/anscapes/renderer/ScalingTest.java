@@ -1,12 +1,19 @@
 package tech.guiyom.anscapes.renderer;
 
 import org.junit.jupiter.api.Test;
+import tech.guiyom.anscapes.ColorMode;
 import tech.guiyom.anscapes.Utils;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ScalingTest {
 
@@ -20,4 +27,80 @@ public class ScalingTest {
         img2.setRGB(0, 0, 64, 64, out, 0, 64);
         ImageIO.write(img2, "png", new File("temp/scaling.png"));
     }
+
+    @Test
+    public void testRendererScaling() {
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        AbstractImageRenderer renderer = new RgbImageRenderer(64, 48);
+
+        int[] nearest = new int[64 * 48];
+        AbstractImageRenderer.resize(data, img.getWidth(), img.getHeight(), nearest, 64, 48);
+        int[] out = new int[64 * 48];
+        renderer.resize(data, img.getWidth(), img.getHeight(), out);
+        assertArrayEquals(nearest, out);
+
+        int[] average = new int[64 * 48];
+        AbstractImageRenderer.resizeAverage(data, img.getWidth(), img.getHeight(), average, 64, 48);
+        renderer.setScaling(Scaling.AREA_AVERAGE);
+        renderer.resize(data, img.getWidth(), img.getHeight(), out);
+        assertArrayEquals(average, out);
+
+        assertThrows(IllegalArgumentException.class, () -> renderer.resize(data, img.getWidth(), img.getHeight(), new int[64 * 47]));
+    }
+
+    @Test
+    public void testAreaAverage() throws IOException {
+        BufferedImage img = Utils.getSampleImage();
+        int[] data = img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+        int[] out = new int[64 * 64];
+        AbstractImageRenderer.resizeAverage(data, img.getWidth(), img.getHeight(), out, 64, 64);
+        BufferedImage img2 = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        img2.setRGB(0, 0, 64, 64, out, 0, 64);
+        ImageIO.write(img2, "png", new File("temp/scaling_average.png"));
+
+        // 2x2 checkerboard of black and white
+        int[] checker = new int[16 * 16];
+        for (int i = 0; i < checker.length; ++i)
+            checker[i] = (i / 16 + i % 16) % 2 == 0 ? 0xff000000 : 0xffffffff;
+        int[] gray = new int[4 * 4];
+        AbstractImageRenderer.resizeAverage(checker, 16, 16, gray, 4, 4);
+        for (int p : gray)
+            assertEquals(0xff808080, p);
+
+        // Tall boxes are summed by chunks of rows
+        int[] stripes = new int[2 * 600];
+        for (int i = 0; i < stripes.length; ++i)
+            stripes[i] = i / 2 % 2 == 0 ? 0xff000000 : 0xffffffff;
+        int[] average = new int[1];
+        AbstractImageRenderer.resizeAverage(stripes, 2, 600, average, 1, 1);
+        assertEquals(0xff808080, average[0]);
+
+        // Upscaling repeats pixels
+        int[] up = new int[4];
+        AbstractImageRenderer.resizeAverage(new int[]{ 0xff102030, 0xff405060 }, 2, 1, up, 2, 2);
+        assertArrayEquals(new int[]{ 0xff102030, 0xff405060, 0xff102030, 0xff405060 }, up);
+    }
+
+    @Test
+    public void testAreaAverageRenderer() {
+        // A checker inverted every other 4x4 block, nearest sampling alternates black and white cells
+        int[] checker = new int[160 * 96];
+        for (int i = 0; i < checker.length; ++i) {
+            int x = i % 160;
+            int y = i / 160;
+            checker[i] = (x + y + x / 4 + y / 4) % 2 == 0 ? 0xff000000 : 0xffffffff;
+        }
+
+        AbstractImageRenderer renderer = (AbstractImageRenderer) ImageRenderer.createRenderer(ColorMode.RGB, 40, 24);
+        String nearest = renderer.renderString(checker, 160, 96);
+        renderer.setScaling(Scaling.AREA_AVERAGE);
+        String average = renderer.renderString(checker, 160, 96);
+
+        // A single gray, encoded once per line
+        int[] gray = new int[40 * 24];
+        Arrays.fill(gray, 0xff808080);
+        assertEquals(renderer.renderString(gray, 40, 24), average);
+        assertTrue(average.length() < nearest.length());
+    }
 }
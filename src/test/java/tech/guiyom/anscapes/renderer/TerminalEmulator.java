@@ -0,0 +1,203 @@
+package tech.guiyom.anscapes.renderer;
+
+import java.util.Arrays;
+
+/**
+ * A tiny terminal emulator, only supporting what renderers emit.
+ * Used to compare what is displayed rather than the sequences themselves.
+ */
+final class TerminalEmulator {
+
+    private final int width;
+    private final int height;
+    // Code points
+    private final int[][] glyphs;
+    private final String[][] fgs;
+    private final String[][] bgs;
+
+    private int row = 0;
+    private int col = 0;
+    private String fg = "default";
+    private String bg = "default";
+
+    TerminalEmulator(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.glyphs = new int[height][width];
+        this.fgs = new String[height][width];
+        this.bgs = new String[height][width];
+        for (int i = 0; i < height; ++i) {
+            Arrays.fill(glyphs[i], ' ');
+            Arrays.fill(fgs[i], "default");
+            Arrays.fill(bgs[i], "default");
+        }
+    }
+
+    TerminalEmulator write(CharSequence seq) {
+        int i = 0;
+        while (i < seq.length()) {
+            char c = seq.charAt(i);
+            if (c == '\33') {
+                int end = i + 2;
+                while (!Character.isLetter(seq.charAt(end)))
+                    ++end;
+                csi(seq.subSequence(i + 2, end).toString(), seq.charAt(end));
+                i = end + 1;
+            } else if (c == '\r') {
+                col = 0;
+                ++i;
+            } else if (c == '\n') {
+                col = 0;
+                ++row;
+                ++i;
+            } else {
+                int cp = Character.codePointAt(seq, i);
+                put(cp);
+                i += Character.charCount(cp);
+            }
+        }
+        return this;
+    }
+
+    private void put(int c) {
+        glyphs[row][col] = c;
+        fgs[row][col] = fg;
+        bgs[row][col] = bg;
+        ++col;
+    }
+
+    private static int param(String params, int def) {
+        return params.isEmpty() ? def : Integer.parseInt(params);
+    }
+
+    private void csi(String params, char command) {
+        switch (command) {
+            case 'm':
+                sgr(params.isEmpty() ? new String[]{ "0" } : params.split(";"));
+                break;
+            case 'H': {
+                String[] pos = params.split(";");
+                row = Integer.parseInt(pos[0]) - 1;
+                col = Integer.parseInt(pos[1]) - 1;
+                break;
+            }
+            case 'C':
+                col += param(params, 1);
+                break;
+            case 'D':
+                col -= param(params, 1);
+                break;
+            case 'G':
+                col = param(params, 1) - 1;
+                break;
+            case 'X':
+                erase(col, Math.min(width, col + param(params, 1)));
+                break;
+            case 'K':
+                erase(col, width);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported sequence : " + params + command);
+        }
+    }
+
+    private void erase(int from, int to) {
+        for (int x = from; x < to; ++x) {
+            glyphs[row][x] = ' ';
+            fgs[row][x] = fg;
+            bgs[row][x] = bg;
+        }
+    }
+
+    private void sgr(String[] params) {
+        for (int i = 0; i < params.length; ++i) {
+            int p = Integer.parseInt(params[i]);
+            if (p == 0) {
+                fg = "default";
+                bg = "default";
+            } else if (p == 38 || p == 48) {
+                String color;
+                if (params[i + 1].equals("2")) {
+                    color = "rgb" + params[i + 2] + ',' + params[i + 3] + ',' + params[i + 4];
+                    i += 4;
+                } else {
+                    color = "256:" + params[i + 2];
+                    i += 2;
+                }
+                if (p == 38)
+                    fg = color;
+                else
+                    bg = color;
+            } else if (p >= 30 && p <= 37) {
+                fg = "ansi" + (p - 30);
+            } else if (p >= 90 && p <= 97) {
+                fg = "ansi" + (p - 90 + 8);
+            } else if (p >= 40 && p <= 47) {
+                bg = "ansi" + (p - 40);
+            } else if (p >= 100 && p <= 107) {
+                bg = "ansi" + (p - 100 + 8);
+            } else {
+                throw new IllegalArgumentException("Unsupported SGR : " + p);
+            }
+        }
+    }
+
+    /**
+     * @return the color displayed in the upper half of the cell
+     */
+    String upper(int row, int col) {
+        return pixel(row, col, Blocks.HALF, 0);
+    }
+
+    /**
+     * @return the color displayed in the lower half of the cell
+     */
+    String lower(int row, int col) {
+        return pixel(row, col, Blocks.HALF, 1);
+    }
+
+    /**
+     * @param blocks the blocks the cell is drawn with
+     * @param index  the pixel of the cell, row by row
+     * @return the color displayed by this pixel of the cell
+     */
+    String pixel(int row, int col, Blocks blocks, int index) {
+        int c = glyphs[row][col];
+        for (int pattern = 0; pattern < blocks.glyphs.length; ++pattern)
+            if (blocks.glyphs[pattern] == c)
+                return (pattern & (1 << index)) != 0 ? fgs[row][col] : bgs[row][col];
+        throw new IllegalStateException("Not a glyph of " + blocks + " : " + Integer.toHexString(c));
+    }
+
+    int getRow() {
+        return row;
+    }
+
+    int getCol() {
+        return col;
+    }
+
+    /**
+     * @return every displayed half cell color, to be compared with another emulator
+     */
+    String dump() {
+        return dump(Blocks.HALF);
+    }
+
+    /**
+     * @param blocks the blocks cells are drawn with
+     * @return every displayed pixel color, to be compared with another emulator
+     */
+    String dump(Blocks blocks) {
+        int pixels = blocks.columns() * blocks.rows();
+        StringBuilder sb = new StringBuilder();
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                for (int i = 0; i < pixels; ++i)
+                    sb.append(pixel(y, x, blocks, i)).append(i < pixels - 1 ? '/' : ' ');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package tech.guiyom.anscapes.video;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.renderer.ImageRenderer;
+import tech.guiyom.anscapes.renderer.PixelFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RawVideoFileTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int FRAME_SIZE = WIDTH * HEIGHT * 4;
+
+    @Test
+    public void testRandomAccess(@TempDir Path dir) throws IOException {
+
+        byte[] frames = new byte[10 * FRAME_SIZE + 17];
+        new Random(42).nextBytes(frames);
+        Path path = Files.write(dir.resolve("video.raw"), frames);
+
+        try (RawVideoFile file = new RawVideoFile(path, WIDTH, HEIGHT, PixelFormat.RGBA)) {
+            assertEquals(10, file.getFrameCount());
+            for (int i : new int[]{7, 0, 9, 3}) {
+                ByteBuffer frame = file.frame(i);
+                assertEquals(0, frame.position());
+                assertEquals(FRAME_SIZE, frame.remaining());
+                assertEquals(ByteBuffer.wrap(frames, i * FRAME_SIZE, FRAME_SIZE), frame);
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> file.frame(10));
+        }
+    }
+
+    @Test
+    public void testPlayRange(@TempDir Path dir) throws IOException, InterruptedException {
+
+        byte[] frames = new byte[50 * FRAME_SIZE];
+        new Random(42).nextBytes(frames);
+        Path path = Files.write(dir.resolve("video.raw"), frames);
+
+        try (RawVideoFile file = new RawVideoFile(path, WIDTH, HEIGHT, PixelFormat.RGBA)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            VideoPlayer player = new VideoPlayer(ImageRenderer.createRenderer(ColorMode.RGB, 32, 24), WIDTH, HEIGHT, PixelFormat.RGBA, 200);
+            PlaybackStats stats = player.play(file, 10, 40, out);
+
+            assertEquals(30, stats.getFramesRead());
+            assertEquals(30, stats.getFramesWritten() + stats.getFramesDropped());
+            assertTrue(stats.getFramesWritten() > 0);
+            assertThrows(IndexOutOfBoundsException.class, () -> player.play(file, 40, 51, out));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package tech.guiyom.anscapes.video;
+
+import org.junit.jupiter.api.Test;
+import tech.guiyom.anscapes.Anscapes;
+import tech.guiyom.anscapes.ColorMode;
+import tech.guiyom.anscapes.renderer.ImageRenderer;
+import tech.guiyom.anscapes.renderer.PixelFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VideoPlayerTest {
+
+    @Test
+    public void testPlayback() throws IOException, InterruptedException {
+
+        int width = 64;
+        int height = 48;
+        int numFrames = 50;
+        byte[] frames = new byte[numFrames * width * height * 3 + 17];
+        new Random(42).nextBytes(frames);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VideoPlayer player = new VideoPlayer(ImageRenderer.createRenderer(ColorMode.RGB, 32, 24), width, height, PixelFormat.RGB24, 200);
+        PlaybackStats stats = player.play(new ByteArrayInputStream(frames), out);
+
+        System.out.println(stats);
+        assertEquals(numFrames, stats.getFramesRead());
+        assertEquals(numFrames, stats.getFramesWritten() + stats.getFramesDropped());
+        assertTrue(stats.getFramesWritten() > 0);
+        // The screen is cleared first, each frame starts at the top left corner and colors are reset at the end
+        long framing = Anscapes.CLEAR.length() + Anscapes.RESET_CURSOR.length() * stats.getFramesWritten() + Anscapes.RESET.length();
+        assertEquals(out.size() - framing, stats.getBytesWritten());
+    }
+}